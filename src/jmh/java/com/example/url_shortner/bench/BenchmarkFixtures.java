@@ -0,0 +1,152 @@
+package com.example.url_shortner.bench;
+
+import com.example.url_shortner.entity.UrlMapping;
+import com.example.url_shortner.repository.UrlMappingRepository;
+import com.example.url_shortner.repository.UserRepository;
+import com.example.url_shortner.service.ClickCountAggregator;
+import com.example.url_shortner.service.ClickJournal;
+import com.example.url_shortner.service.ClickStatsService;
+import com.example.url_shortner.service.EdgeRedirectIndex;
+import com.example.url_shortner.service.LocalUrlCache;
+import com.example.url_shortner.service.RedisCircuitBreaker;
+import com.example.url_shortner.service.RedisUrlCache;
+import com.example.url_shortner.service.ShardRouter;
+import com.example.url_shortner.service.ShortCodeFilter;
+import com.example.url_shortner.service.ShortCodeGenerator;
+import com.example.url_shortner.service.UrlMetrics;
+import com.example.url_shortner.service.UrlService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Builds the service layer by hand with stubbed Redis, JDBC and repositories so the
+ * benchmarks measure our code rather than the network.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    @SuppressWarnings("unchecked")
+    static RedisTemplate<String, String> redisTemplate(ValueOperations<String, String> valueOperations) {
+        RedisTemplate<String, String> redisTemplate = stub(RedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        // Every database load wins the cross-node load lock
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        return redisTemplate;
+    }
+
+    static JdbcTemplate sequenceJdbcTemplate(int blockSize) {
+        JdbcTemplate jdbcTemplate = stub(JdbcTemplate.class);
+        AtomicLong sequence = new AtomicLong(1);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class)))
+                .thenAnswer(invocation -> sequence.getAndAdd(blockSize));
+        return jdbcTemplate;
+    }
+
+    static ShortCodeGenerator shortCodeGenerator() {
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        ReflectionTestUtils.setField(generator, "jdbcTemplate", sequenceJdbcTemplate(1000));
+        ReflectionTestUtils.setField(generator, "idSource", "sequence");
+        ReflectionTestUtils.setField(generator, "blockSize", 1000);
+        ReflectionTestUtils.setField(generator, "permute", true);
+        ReflectionTestUtils.setField(generator, "permutationKey", 6364136223846793005L);
+        return generator;
+    }
+
+    static RedisCircuitBreaker redisCircuitBreaker() {
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 5);
+        ReflectionTestUtils.setField(circuitBreaker, "slowCallMillis", 100L);
+        ReflectionTestUtils.setField(circuitBreaker, "openMillis", 5000L);
+        return circuitBreaker;
+    }
+
+    static RedisUrlCache redisUrlCache(RedisTemplate<String, String> redisTemplate) {
+        RedisUrlCache cache = new RedisUrlCache();
+        ReflectionTestUtils.setField(cache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(cache, "circuitBreaker", redisCircuitBreaker());
+        return cache;
+    }
+
+    static LocalUrlCache localUrlCache(RedisTemplate<String, String> redisTemplate) {
+        LocalUrlCache cache = new LocalUrlCache();
+        ReflectionTestUtils.setField(cache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(cache, "circuitBreaker", redisCircuitBreaker());
+        ReflectionTestUtils.setField(cache, "maxSize", 100_000L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.init();
+        return cache;
+    }
+
+    static ClickCountAggregator clickCountAggregator() {
+        ClickCountAggregator aggregator = new ClickCountAggregator();
+        ReflectionTestUtils.setField(aggregator, "jdbcTemplate", stub(JdbcTemplate.class));
+        ReflectionTestUtils.setField(aggregator, "taskScheduler", stub(TaskScheduler.class));
+        ReflectionTestUtils.setField(aggregator, "maxUnflushed", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(aggregator, "shardRouter", new ShardRouter());
+        return aggregator;
+    }
+
+    static ClickStatsService clickStatsService() {
+        ClickStatsService clickStatsService = new ClickStatsService();
+        ReflectionTestUtils.setField(clickStatsService, "enabled", true);
+        return clickStatsService;
+    }
+
+    static UrlService urlService(UrlMappingRepository urlMappingRepository,
+                                 RedisTemplate<String, String> redisTemplate,
+                                 LocalUrlCache localUrlCache,
+                                 ClickCountAggregator clickCountAggregator) {
+        UrlService urlService = new UrlService();
+        ReflectionTestUtils.setField(urlService, "urlMappingRepository", urlMappingRepository);
+        ReflectionTestUtils.setField(urlService, "userRepository", stub(UserRepository.class));
+        ReflectionTestUtils.setField(urlService, "redisUrlCache", redisUrlCache(redisTemplate));
+        ReflectionTestUtils.setField(urlService, "clickCountAggregator", clickCountAggregator);
+        // Disabled, so clicks go to the in-memory aggregator
+        ReflectionTestUtils.setField(urlService, "clickJournal", new ClickJournal());
+        ReflectionTestUtils.setField(urlService, "clickStatsService", clickStatsService());
+        ReflectionTestUtils.setField(urlService, "localUrlCache", localUrlCache);
+        ReflectionTestUtils.setField(urlService, "shortCodeGenerator", shortCodeGenerator());
+        // An unbuilt filter reports every code as possibly present
+        ReflectionTestUtils.setField(urlService, "shortCodeFilter", new ShortCodeFilter());
+        // Sharding disabled: a single shard
+        ReflectionTestUtils.setField(urlService, "shardRouter", new ShardRouter());
+        // No snapshot loaded: redirects take the regular path
+        ReflectionTestUtils.setField(urlService, "edgeRedirectIndex", new EdgeRedirectIndex());
+        ReflectionTestUtils.setField(urlService, "urlMetrics", new UrlMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(urlService, "taskExecutor", new SyncTaskExecutor());
+        return urlService;
+    }
+
+    static UrlMapping urlMapping(long id, String shortUrl) {
+        UrlMapping urlMapping = new UrlMapping();
+        urlMapping.setId(id);
+        urlMapping.setShortUrl(shortUrl);
+        urlMapping.setOriginalUrl("https://example.com/articles/" + id + "?utm_source=benchmark&utm_medium=jmh");
+        urlMapping.setCreatedAt(LocalDateTime.now().minusDays(1));
+        urlMapping.setExpiresAt(LocalDateTime.now().plusDays(30));
+        urlMapping.setClickCount(id * 7);
+        return urlMapping;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.url_shortner.bench;
+
+import com.example.url_shortner.entity.UrlMapping;
+import com.example.url_shortner.repository.UrlMappingRepository;
+import com.example.url_shortner.service.LocalUrlCache;
+import com.example.url_shortner.service.UrlService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * UrlService.getOriginalUrlAndTrackClick for each tier that can answer a redirect.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedirectBenchmark {
+
+    private static final int CODES = 1024;
+
+    // LOCAL_HIT: served from the in-process cache, REDIS_HIT: L1 miss served by Redis,
+    // DB_HIT: both caches miss and the repository answers
+    @Param({"LOCAL_HIT", "REDIS_HIT", "DB_HIT"})
+    public String tier;
+
+    private UrlService urlService;
+    private LocalUrlCache localUrlCache;
+    private String[] codes;
+    private int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        codes = new String[CODES];
+        Map<String, UrlMapping> mappings = new HashMap<>();
+        for (int i = 0; i < CODES; i++) {
+            codes[i] = "bench" + i;
+            mappings.put(codes[i], BenchmarkFixtures.urlMapping(i, codes[i]));
+        }
+
+        ValueOperations<String, String> valueOperations = BenchmarkFixtures.stub(ValueOperations.class);
+        if ("DB_HIT".equals(tier)) {
+            when(valueOperations.get(anyString())).thenReturn(null);
+        } else {
+            when(valueOperations.get(anyString())).thenAnswer(invocation ->
+                    mappings.get(invocation.<String>getArgument(0)).getOriginalUrl());
+        }
+        RedisTemplate<String, String> redisTemplate = BenchmarkFixtures.redisTemplate(valueOperations);
+
+        UrlMappingRepository repository = BenchmarkFixtures.stub(UrlMappingRepository.class);
+        when(repository.findByShortUrl(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(mappings.get(invocation.<String>getArgument(0))));
+
+        localUrlCache = BenchmarkFixtures.localUrlCache(redisTemplate);
+        urlService = BenchmarkFixtures.urlService(repository, redisTemplate, localUrlCache,
+                BenchmarkFixtures.clickCountAggregator());
+        for (String code : codes) {
+            urlService.getOriginalUrlAndTrackClick(code);
+        }
+    }
+
+    @Benchmark
+    public String redirect() {
+        String code = codes[next++ & (CODES - 1)];
+        if (!"LOCAL_HIT".equals(tier)) {
+            localUrlCache.invalidateLocal(code);
+        }
+        return urlService.getOriginalUrlAndTrackClick(code);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.url_shortner.bench;
+
+import com.example.url_shortner.service.ShortCodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short code generation, including the amortised cost of leasing ID blocks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortCodeBenchmark {
+
+    private ShortCodeGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = BenchmarkFixtures.shortCodeGenerator();
+    }
+
+    @Benchmark
+    public String generateShortUrl() {
+        return generator.nextCode();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.url_shortner.bench;
+
+import com.example.url_shortner.dto.UrlResponse;
+import com.example.url_shortner.entity.UrlMapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Entity-to-DTO mapping for the /my-urls listing of large accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlResponseMappingBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<UrlMapping> mappings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mappings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            mappings.add(BenchmarkFixtures.urlMapping(i, "code" + i));
+        }
+    }
+
+    @Benchmark
+    public List<UrlResponse> mapToResponses() {
+        return mappings.stream()
+                .map(urlMapping -> new UrlResponse(urlMapping, "http://localhost:8081"))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.service.CachedUrl;
+import com.example.url_shortner.service.RedirectPolicy;
+import com.example.url_shortner.service.RedisUrlCache;
+import com.example.url_shortner.service.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preloads Redis with the most clicked live links after a deploy or a Redis flush, so the
+ * popular codes do not all miss at once and land on the database together.
+ * Links are streamed by click count and written in pipelined batches, paced to
+ * {@code cache.warmup.rate-per-second}. With {@code cache.warmup.block-readiness} the warm-up
+ * runs before the application reports ready; otherwise it runs in the background.
+ * <p>
+ * click_count has no index, since every click flush rewrites it, so picking the top links
+ * scans and sorts all of url_mappings on each shard. Startup pays that once; on a large table
+ * keep block-readiness off so the scan doesn't hold readiness down.
+ */
+@Component
+public class CacheWarmer implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final String TOP_LINKS_SQL =
+            "SELECT short_url, original_url, expires_at, permanent_redirect, cache_max_age_seconds FROM url_mappings " +
+            "WHERE expires_at IS NULL OR expires_at > ? ORDER BY click_count DESC LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RedisUrlCache redisUrlCache;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    @Value("${cache.warmup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cache.warmup.top-n:10000}")
+    private int topN;
+
+    @Value("${cache.warmup.batch-size:500}")
+    private int batchSize;
+
+    @Value("${cache.warmup.rate-per-second:5000}")
+    private int ratePerSecond;
+
+    @Value("${cache.warmup.block-readiness:false}")
+    private boolean blockReadiness;
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            return;
+        }
+        if (blockReadiness) {
+            // Runners finish before ApplicationReadyEvent, so readiness stays REFUSING_TRAFFIC until done
+            warm();
+        } else {
+            taskExecutor.execute(this::warm);
+        }
+    }
+
+    private void warm() {
+        long start = System.nanoTime();
+        long[] loaded = {0};
+        try {
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(batchSize);
+            // Codes are spread evenly by hash, so each shard's share of the top links is about the same
+            int perShard = Math.ceilDiv(topN, shardRouter.shardCount());
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                shardRouter.onShard(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                        streaming.query(TOP_LINKS_SQL, rs -> {
+                            Map<String, CachedUrl> batch = new LinkedHashMap<>();
+                            while (rs.next() && !Thread.currentThread().isInterrupted()) {
+                                Timestamp expiresAt = rs.getTimestamp(3);
+                                batch.put(rs.getString(1), new CachedUrl(rs.getString(2),
+                                        expiresAt == null ? null : expiresAt.toLocalDateTime(),
+                                        RedirectPolicy.of(rs.getObject(4, Boolean.class), rs.getObject(5, Integer.class))));
+                                if (batch.size() == batchSize) {
+                                    loaded[0] = write(batch, loaded[0], start);
+                                }
+                            }
+                            loaded[0] = write(batch, loaded[0], start);
+                            return null;
+                        }, Timestamp.valueOf(LocalDateTime.now()), perShard)));
+            }
+            log.info("Cache warm-up loaded {} links in {} ms", loaded[0],
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.warn("Cache warm-up stopped after {} links", loaded[0], e);
+        }
+    }
+
+    /**
+     * Pipelines one batch into Redis, then sleeps as long as needed to stay under the rate limit.
+     * @return The number of links written so far.
+     */
+    private long write(Map<String, CachedUrl> batch, long loaded, long start) {
+        if (batch.isEmpty()) {
+            return loaded;
+        }
+        redisUrlCache.putAll(batch);
+        loaded += batch.size();
+        batch.clear();
+        log.info("Cache warm-up progress: {}/{} links", loaded, topN);
+
+        long dueNanos = TimeUnit.SECONDS.toNanos(loaded) / ratePerSecond;
+        long aheadNanos = dueNanos - (System.nanoTime() - start);
+        if (aheadNanos > 0) {
+            // Returns early on interrupt, which the read loop then notices
+            LockSupport.parkNanos(aheadNanos);
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.service.ClickCountAggregator;
+import com.example.url_shortner.service.LocalUrlCache;
+import com.example.url_shortner.service.RedisUrlCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    // Hit, miss and eviction counts of the in-process cache, clicks not yet written to the DB,
+    // and Redis deletes waiting for Redis to come back
+    @Bean
+    public MeterBinder redirectCacheMeters(LocalUrlCache localUrlCache, ClickCountAggregator clickCountAggregator,
+                                           RedisUrlCache redisUrlCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, localUrlCache.getNativeCache(), "url.l1");
+            Gauge.builder("clicks.unflushed", clickCountAggregator, ClickCountAggregator::getUnflushedClicks)
+                    .description("Clicks recorded in memory and not yet flushed to url_mappings")
+                    .register(registry);
+            Gauge.builder("redis.pending.deletes", redisUrlCache, RedisUrlCache::getPendingDeletes)
+                    .description("Redis cache deletes queued while the Redis circuit was open")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.service.RateLimiter;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers {@code 429 Too Many Requests} with a Retry-After before any other filter runs, so a
+ * rejected request costs neither a JWT check by Spring Security nor a database call.
+ * Redirects and the auth endpoints are limited per client IP, shortening per user when the
+ * request carries a valid JWT and per IP otherwise. A batch shorten takes one token here and
+ * the rest, one per URL, once the controller has read its body. Everything else passes
+ * straight through.
+ * <p>
+ * The client IP is {@link HttpServletRequest#getRemoteAddr()}, which Tomcat takes from
+ * X-Forwarded-For when the request comes from a trusted proxy (see
+ * {@code server.forward-headers-strategy} and {@code server.tomcat.remoteip.internal-proxies}).
+ */
+public class RateLimitFilter implements Filter {
+
+    private final RateLimiter rateLimiter;
+    private final JwtUtil jwtUtil;
+
+    public RateLimitFilter(RateLimiter rateLimiter, JwtUtil jwtUtil) {
+        this.rateLimiter = rateLimiter;
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+
+        RateLimiter.Limit limit = classify(request);
+        if (limit == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String key = limit == RateLimiter.Limit.SHORTEN ? userOrAddress(request) : request.getRemoteAddr();
+        long waitNanos = rateLimiter.tryAcquire(limit, key);
+        if (waitNanos > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.ceilDiv(waitNanos, TimeUnit.SECONDS.toNanos(1))));
+            response.setContentLength(0);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    static RateLimiter.Limit classify(HttpServletRequest request) {
+        if (RedirectFastPathFilter.extractShortCode(request) != null) {
+            return RateLimiter.Limit.REDIRECT;
+        }
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/api/urls/shorten") || path.equals("/api/urls/shorten/batch")) {
+            return RateLimiter.Limit.SHORTEN;
+        }
+        if (path.startsWith("/api/auth/")) {
+            return RateLimiter.Limit.AUTH;
+        }
+        return null;
+    }
+
+    // An invalid token is left for Spring Security to reject; until then it counts against the IP
+    private String userOrAddress(HttpServletRequest request) {
+        String authorizationHeader = request.getHeader("Authorization");
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+            try {
+                String username = jwtUtil.parseVerified(authorizationHeader.substring(7)).getSubject();
+                if (username != null) {
+                    return RateLimiter.userKey(username);
+                }
+            } catch (JwtException | IllegalArgumentException e) {
+                // Fall through to the address
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
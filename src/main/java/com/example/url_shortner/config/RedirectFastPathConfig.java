@@ -0,0 +1,22 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.service.UrlService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnProperty(name = "redirect.fast-path.enabled", havingValue = "true", matchIfMissing = true)
+public class RedirectFastPathConfig {
+
+    // Registered ahead of Spring Security's filter chain (order -100) and every other filter but the rate limit
+    @Bean
+    public FilterRegistrationBean<RedirectFastPathFilter> redirectFastPathFilter(UrlService urlService) {
+        FilterRegistrationBean<RedirectFastPathFilter> registration = new FilterRegistrationBean<>(new RedirectFastPathFilter(urlService));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.service.CachedUrl;
+import com.example.url_shortner.service.RedirectPolicy;
+import com.example.url_shortner.service.UrlService;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Serves {@code GET /{shortUrl}} (and HEAD, without counting a click) before the Spring Security chain and DispatcherServlet run.
+ * Redirects are public and stateless, so they need neither JWT parsing nor handler mapping;
+ * this filter resolves the code through {@link UrlService} and writes a bare redirect, with the
+ * status and Cache-Control of the link's {@link RedirectPolicy}, or a 404.
+ * Every other path, including all of {@code /api/**}, is passed straight down the chain.
+ */
+public class RedirectFastPathFilter implements Filter {
+
+    // Single-segment paths that belong to the application rather than to short codes
+    private static final Set<String> RESERVED = Set.of("api", "error", "actuator", "favicon");
+
+    private final UrlService urlService;
+
+    public RedirectFastPathFilter(UrlService urlService) {
+        this.urlService = urlService;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+
+        String shortUrl = extractShortCode(request);
+        if (shortUrl == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // A HEAD gets the same answer but isn't counted as a click
+        CachedUrl cachedUrl = "HEAD".equals(request.getMethod())
+                ? urlService.resolveWithoutClick(shortUrl)
+                : urlService.resolveAndTrackClick(shortUrl, request.getHeader("Referer"), request.getHeader("User-Agent"));
+        if (cachedUrl == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.setContentLength(0);
+        } else {
+            writeRedirect(response, cachedUrl);
+        }
+    }
+
+    /**
+     * Writes the redirect with the headers of the link's policy. Shared with RedirectController.
+     */
+    public static void writeRedirect(HttpServletResponse response, CachedUrl cachedUrl) throws IOException {
+        RedirectPolicy policy = cachedUrl.policy();
+        String originalUrl = cachedUrl.originalUrl();
+        response.setHeader("Cache-Control", policy.cacheControl(cachedUrl.expiresAt()));
+        if (policy.isPermanent() || originalUrl.contains("://")) {
+            response.setStatus(policy.status());
+            response.setHeader("Location", originalUrl);
+            response.setContentLength(0);
+        } else {
+            // Let the container resolve relative targets exactly as RedirectController did
+            response.sendRedirect(originalUrl);
+        }
+    }
+
+    /**
+     * Returns the code if this is a GET or HEAD for a single path segment of 3-20 letters and
+     * digits (the shape of both generated codes and custom aliases), otherwise null.
+     */
+    static String extractShortCode(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return null;
+        }
+        String uri = request.getRequestURI();
+        int start = request.getContextPath().length() + 1;
+        int length = uri.length() - start;
+        if (length < 3 || length > 20 || uri.charAt(start - 1) != '/') {
+            return null;
+        }
+        for (int i = start; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))) {
+                return null;
+            }
+        }
+        String shortUrl = uri.substring(start);
+        return RESERVED.contains(shortUrl) ? null : shortUrl;
+    }
+}
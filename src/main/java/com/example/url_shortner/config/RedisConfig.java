@@ -0,0 +1,51 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.service.LocalUrlCache;
+import com.example.url_shortner.service.ShortCodeFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+@Configuration
+public class RedisConfig {
+
+    @Autowired
+    private LocalUrlCache localUrlCache;
+
+    @Autowired
+    private ShortCodeFilter shortCodeFilter;
+
+    // Subscribes every node to cache invalidations and new short codes published by the others
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> localUrlCache.invalidateFromMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(LocalUrlCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(new ShortCodeListener(), new ChannelTopic(ShortCodeFilter.ADD_CHANNEL));
+        return container;
+    }
+
+    // Also told of every (re)subscription, after which the filter may have missed codes
+    private class ShortCodeListener implements MessageListener, SubscriptionListener {
+
+        @Override
+        public void onMessage(Message message, byte[] pattern) {
+            shortCodeFilter.addFromMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onChannelSubscribed(byte[] channel, long count) {
+            shortCodeFilter.onSubscribed();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.url_shortner.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to the primary.
+ * Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * so the physical connection is only fetched once the transaction's read-only flag is known.
+ * <p>
+ * A user who has just written is kept on the primary for a short window, so their own
+ * listings show a link they created a moment ago. Replicas that fail a health check or lag by
+ * more than the allowed amount are skipped until they recover, and a replica that cannot hand
+ * out a connection falls back to the primary for that call.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+
+    // 0 when the replica has replayed everything it received, otherwise the age of the last replayed transaction
+    private static final String LAG_SQL = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END";
+
+    private static final ThreadLocal<Boolean> forcePrimary = new ThreadLocal<>();
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final Map<String, HikariDataSource> replicas;
+    private final List<String> replicaKeys;
+    private final Set<String> healthyReplicas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Cache<String, Boolean> recentWriters;
+    private final long maxLagMillis;
+    private final int validationTimeoutSeconds;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, HikariDataSource> replicas,
+                                    Duration readYourWritesWindow, long maxLagMillis, int validationTimeoutSeconds) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.replicaKeys = List.copyOf(replicas.keySet());
+        this.maxLagMillis = maxLagMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        // Replicas start out healthy; the first check runs right away
+        healthyReplicas.addAll(replicaKeys);
+    }
+
+    /**
+     * Runs the call with every query on the primary, even inside read-only transactions.
+     */
+    public static <T> T onPrimary(Supplier<T> call) {
+        Boolean previous = forcePrimary.get();
+        forcePrimary.set(Boolean.TRUE);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                forcePrimary.remove();
+            } else {
+                forcePrimary.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                String user = currentUser();
+                if (user != null) {
+                    recentWriters.put(user, Boolean.TRUE);
+                }
+            }
+            return PRIMARY;
+        }
+        if (Boolean.TRUE.equals(forcePrimary.get())) {
+            return PRIMARY;
+        }
+        String user = currentUser();
+        if (user != null && recentWriters.getIfPresent(user) != null) {
+            return PRIMARY;
+        }
+        return nextHealthyReplica();
+    }
+
+    private String nextHealthyReplica() {
+        int replicaCount = replicaKeys.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+        for (int i = 0; i < replicaCount; i++) {
+            String key = replicaKeys.get((start + i) % replicaCount);
+            if (healthyReplicas.contains(key)) {
+                return key;
+            }
+        }
+        return PRIMARY;
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection();
+        }
+        try {
+            return replicas.get(key).getConnection();
+        } catch (SQLException e) {
+            markUnhealthy((String) key, e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection(username, password);
+        }
+        try {
+            return replicas.get(key).getConnection(username, password);
+        } catch (SQLException e) {
+            markUnhealthy((String) key, e.getMessage());
+            return primary.getConnection(username, password);
+        }
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${datasource.replicas.health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        replicas.forEach((key, replica) -> {
+            try (Connection connection = replica.getConnection()) {
+                if (!connection.isValid(validationTimeoutSeconds)) {
+                    markUnhealthy(key, "connection is not valid");
+                    return;
+                }
+                long lagMillis = lagMillis(connection);
+                if (maxLagMillis > 0 && lagMillis > maxLagMillis) {
+                    markUnhealthy(key, "replication lag of " + lagMillis + " ms");
+                    return;
+                }
+                if (healthyReplicas.add(key)) {
+                    log.info("Read replica {} is healthy again", key);
+                }
+            } catch (SQLException e) {
+                markUnhealthy(key, e.getMessage());
+            }
+        });
+    }
+
+    private long lagMillis(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LAG_SQL)) {
+            // Null when the database is not a standby at all
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void markUnhealthy(String key, String reason) {
+        if (healthyReplicas.remove(key)) {
+            log.warn("Read replica {} taken out of rotation: {}", key, reason);
+        }
+    }
+
+    public int getHealthyReplicas() {
+        return healthyReplicas.size();
+    }
+
+    @Override
+    public void destroy() {
+        replicas.values().forEach(HikariDataSource::close);
+    }
+}
@@ -69,6 +69,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         // Specific public endpoints first
                          .requestMatchers("/", "/api/auth/**", "/*").permitAll()
+                        // Health probes and the Prometheus scrape endpoint, served only on management.server.port
+                        .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
                         // All other requests must be authenticated
                         .anyRequest().authenticated()
                 )
@@ -0,0 +1,51 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.service.ShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out connections to the shard selected by {@link ShardRouter#onShard} on the calling
+ * thread. Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * so a transaction's connection is opened where its first statement runs.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private final List<HikariDataSource> additionalShards;
+
+    /**
+     * @param additionalShards Shards 1..n, in order.
+     */
+    public ShardRoutingDataSource(DataSource mainShard, List<HikariDataSource> additionalShards) {
+        this.additionalShards = additionalShards;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(0, mainShard);
+        for (int i = 0; i < additionalShards.size(); i++) {
+            targets.put(i + 1, additionalShards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(mainShard);
+        // An unknown shard is a bug, not something to paper over with shard 0
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouter.currentShard();
+    }
+
+    public List<HikariDataSource> getAdditionalShards() {
+        return additionalShards;
+    }
+
+    @Override
+    public void destroy() {
+        additionalShards.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.entity.UrlMapping;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the single auto-configured pool with one pool per shard when
+ * {@code shards.enabled=true}: shard 0 is {@code spring.datasource.*}, the rest come from
+ * {@code shards.urls}. See {@link com.example.url_shortner.service.ShardRouter} for placement.
+ */
+@Configuration
+@ConditionalOnProperty(name = "shards.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Value("${shards.urls}")
+    private List<String> shardUrls;
+
+    // Credentials of the additional shards default to shard 0's
+    @Value("${shards.username:${spring.datasource.username}}")
+    private String shardUsername;
+
+    @Value("${shards.password:${spring.datasource.password}}")
+    private String shardPassword;
+
+    @Value("${shards.pool-size:10}")
+    private int shardPoolSize;
+
+    @Value("${spring.jpa.hibernate.ddl-auto:none}")
+    private String ddlAuto;
+
+    @Value("${datasource.replicas.enabled:false}")
+    private boolean replicasEnabled;
+
+    // Kept out of autowiring so JPA and JdbcTemplate only see the routing proxy
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource mainShardDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("shard-0");
+        return dataSource;
+    }
+
+    @Bean(autowireCandidate = false)
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties) {
+        List<HikariDataSource> additionalShards = new ArrayList<>(shardUrls.size());
+        for (int i = 0; i < shardUrls.size(); i++) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("shard-" + (i + 1));
+            // The driver is picked from the URL, so shards can be embedded databases in tests
+            shard.setJdbcUrl(shardUrls.get(i).trim());
+            shard.setUsername(shardUsername);
+            shard.setPassword(shardPassword);
+            shard.setMaximumPoolSize(shardPoolSize);
+            additionalShards.add(shard);
+        }
+        return new ShardRoutingDataSource(mainShardDataSource(properties), additionalShards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties) {
+        if (replicasEnabled) {
+            throw new IllegalStateException("shards.enabled and datasource.replicas.enabled cannot be combined yet");
+        }
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource(properties));
+    }
+
+    /**
+     * Hibernate only manages the schema of shard 0; this applies the same ddl-auto to the other
+     * shards before any scheduled job or request can reach them.
+     */
+    @Bean
+    public InitializingBean shardSchemaInitializer(EntityManagerFactoryBuilder builder, DataSourceProperties properties) {
+        return () -> {
+            if ("none".equals(ddlAuto)) {
+                return;
+            }
+            // The throwaway factory is closed right away, which must not drop what it created
+            String action = "create-drop".equals(ddlAuto) ? "create" : ddlAuto;
+            List<HikariDataSource> additionalShards = shardRoutingDataSource(properties).getAdditionalShards();
+            for (int i = 0; i < additionalShards.size(); i++) {
+                LocalContainerEntityManagerFactoryBean schemaOnly = builder
+                        .dataSource(additionalShards.get(i))
+                        .packages(UrlMapping.class)
+                        .persistenceUnit("shard-" + (i + 1) + "-schema")
+                        .properties(Map.of(
+                                "hibernate.hbm2ddl.auto", action,
+                                // Boot sets these for the main persistence unit only
+                                "hibernate.physical_naming_strategy",
+                                "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy",
+                                "hibernate.implicit_naming_strategy",
+                                "org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy"))
+                        .build();
+                schemaOnly.afterPropertiesSet();
+                schemaOnly.destroy();
+            }
+        };
+    }
+}
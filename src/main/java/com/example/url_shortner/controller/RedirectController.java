@@ -1,11 +1,15 @@
 package com.example.url_shortner.controller;
 
+import com.example.url_shortner.config.RedirectFastPathFilter;
+import com.example.url_shortner.service.CachedUrl;
 import com.example.url_shortner.service.UrlService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -18,12 +22,19 @@ public class RedirectController {
     private UrlService urlService;
 
     @GetMapping("/{shortUrl}")
-    public void redirect(@PathVariable String shortUrl, HttpServletResponse httpServletResponse) throws IOException {
-        String originalUrl = urlService.getOriginalUrlAndTrackClick(shortUrl);
+    public void redirect(@PathVariable String shortUrl,
+                         @RequestHeader(value = "Referer", required = false) String referrer,
+                         @RequestHeader(value = "User-Agent", required = false) String userAgent,
+                         HttpServletRequest httpServletRequest,
+                         HttpServletResponse httpServletResponse) throws IOException {
+        // @GetMapping also answers HEAD, which must not count as a click
+        CachedUrl cachedUrl = "HEAD".equals(httpServletRequest.getMethod())
+                ? urlService.resolveWithoutClick(shortUrl)
+                : urlService.resolveAndTrackClick(shortUrl, referrer, userAgent);
 
-        if (originalUrl != null) {
-            // Perform a 302 Found redirect
-            httpServletResponse.sendRedirect(originalUrl);
+        if (cachedUrl != null) {
+            // A 301 or 302, cacheable as the link's policy allows
+            RedirectFastPathFilter.writeRedirect(httpServletResponse, cachedUrl);
         } else {
             // If the URL is not found, throw a 404 Not Found error
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Short URL not found");
@@ -1,20 +1,35 @@
 package com.example.url_shortner.controller;
 
+import com.example.url_shortner.dto.BatchShortenResult;
+import com.example.url_shortner.dto.ClickStats;
+import com.example.url_shortner.dto.RedirectPolicyRequest;
 import com.example.url_shortner.dto.ShortenRequest;
+import com.example.url_shortner.dto.UrlChanges;
+import com.example.url_shortner.dto.UrlPage;
 import com.example.url_shortner.dto.UrlResponse;
 import com.example.url_shortner.entity.User;
 import com.example.url_shortner.repository.UserRepository;
+import com.example.url_shortner.service.BatchShortenService;
+import com.example.url_shortner.service.ClickStatsService;
+import com.example.url_shortner.service.RateLimiter;
 import com.example.url_shortner.service.UrlService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -27,6 +42,18 @@ public class UrlController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BatchShortenService batchShortenService;
+
+    @Autowired
+    private ClickStatsService clickStatsService;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Value("${urls.batch.max-size:10000}")
+    private int maxBatchSize;
+
     @PostMapping("/shorten")
     public ResponseEntity<UrlResponse> shortenUrl(@RequestBody @Valid ShortenRequest shortenRequest, HttpServletRequest request) {
         // Get the currently authenticated user's details
@@ -43,18 +70,160 @@ public class UrlController {
         return ResponseEntity.ok(urlResponse);
     }
 
+    @PostMapping("/shorten/batch")
+    public ResponseEntity<List<BatchShortenResult>> shortenUrls(@RequestBody List<ShortenRequest> shortenRequests, HttpServletRequest request) {
+        if (shortenRequests.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch can contain at most " + maxBatchSize + " URLs");
+        }
+
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+
+        // Every URL costs a shorten token; the rate limit filter already took one for the request
+        long waitNanos = rateLimiter.tryAcquire(RateLimiter.Limit.SHORTEN, RateLimiter.userKey(username), shortenRequests.size() - 1);
+        if (waitNanos > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.ceilDiv(waitNanos, TimeUnit.SECONDS.toNanos(1))))
+                    .build();
+        }
+
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Error: Authenticated user not found."));
+
+        String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
+
+        // Each item gets its own result, so one bad alias doesn't fail the whole batch
+        List<BatchShortenResult> results = batchShortenService.shortenUrls(shortenRequests, user, baseUrl);
+
+        return ResponseEntity.ok(results);
+    }
+
     @GetMapping("/my-urls")
-    public ResponseEntity<List<UrlResponse>> getUserUrls(HttpServletRequest request) {
+    public ResponseEntity<List<UrlResponse>> getUserUrls(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                         HttpServletRequest request) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("Error: Authenticated user not found."));
 
+        // Unchanged lists are answered from the version alone
+        String version = urlService.getUserUrlsVersion(user);
+        if (version.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(version).build();
+        }
+
         String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
 
         // Call the new service method and convert the results to a list of UrlResponse DTOs
         List<UrlResponse> urls = urlService.getUserUrls(user, baseUrl);
 
-        return ResponseEntity.ok(urls);
+        return ResponseEntity.ok().eTag(version).body(urls);
+    }
+
+    @GetMapping("/my-urls/changes")
+    public ResponseEntity<UrlChanges> getUserUrlChanges(@RequestParam(required = false) String cursor,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                        HttpServletRequest request) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Error: Authenticated user not found."));
+
+        // Nothing changed since the previous poll: keep its cursor
+        String version = urlService.getUserUrlsVersion(user);
+        if (version.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(version).build();
+        }
+
+        String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
+
+        try {
+            return ResponseEntity.ok().eTag(version).body(urlService.getUserUrlChanges(user, cursor, baseUrl));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/my-urls/page")
+    public ResponseEntity<UrlPage> getUserUrlsPage(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer size,
+                                                   HttpServletRequest request) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Error: Authenticated user not found."));
+
+        String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
+
+        try {
+            return ResponseEntity.ok(urlService.getUserUrlsPage(user, cursor, size, baseUrl));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/my-urls/export")
+    public ResponseEntity<StreamingResponseBody> exportUserUrls(HttpServletRequest request) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Error: Authenticated user not found."));
+
+        String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
+
+        // The JSON array is written while rows are read, instead of being built in memory first
+        StreamingResponseBody body = outputStream -> urlService.exportUserUrls(user, baseUrl, outputStream);
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping("/{shortUrl}/stats")
+    public ResponseEntity<ClickStats> getStats(@PathVariable String shortUrl,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                               @RequestParam(defaultValue = "hour") String granularity) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Error: Authenticated user not found."));
+
+        ClickStats stats;
+        try {
+            stats = clickStatsService.getStats(shortUrl, user, from, to, granularity);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (RuntimeException e) {
+            if (e.getMessage() != null && e.getMessage().contains("permission")) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
+            }
+            throw e;
+        }
+        if (stats == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "URL not found");
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Changes how the link's redirect may be cached and purges our cached copies. Send
+     * {"permanentRedirect": false, "cacheMaxAgeSeconds": 0} to stop it being cached at all.
+     */
+    @PutMapping("/{shortUrl}/redirect-policy")
+    public ResponseEntity<UrlResponse> updateRedirectPolicy(@PathVariable String shortUrl, @RequestBody RedirectPolicyRequest policy,
+                                                            HttpServletRequest request) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Error: Authenticated user not found."));
+
+        String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
+
+        UrlResponse updated;
+        try {
+            updated = urlService.updateRedirectPolicy(shortUrl, user, policy.getPermanentRedirect(), policy.getCacheMaxAgeSeconds(), baseUrl);
+        } catch (RuntimeException e) {
+            if (e.getMessage() != null && e.getMessage().contains("permission")) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (updated == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "URL not found");
+        }
+        return ResponseEntity.ok(updated);
     }
 
     @DeleteMapping("/{shortUrl}")
@@ -0,0 +1,17 @@
+package com.example.url_shortner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a batch shorten request. Exactly one of url or error is set.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchShortenResult {
+    private int index;
+    private UrlResponse url;
+    private String error;
+}
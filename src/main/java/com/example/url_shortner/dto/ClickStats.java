@@ -0,0 +1,28 @@
+package com.example.url_shortner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Clicks on one link over [from, to), in UTC-aligned buckets. Buckets without clicks are omitted.
+ */
+@Data
+@AllArgsConstructor
+public class ClickStats {
+    private String shortUrl;
+    private String granularity;
+    private Instant from;
+    private Instant to;
+    private long total;
+    private List<Bucket> buckets;
+
+    @Data
+    @AllArgsConstructor
+    public static class Bucket {
+        private Instant start;
+        private long clicks;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.url_shortner.dto;
+
+import lombok.Data;
+
+@Data
+public class RedirectPolicyRequest {
+    private Boolean permanentRedirect; // 301 instead of 302
+    private Integer cacheMaxAgeSeconds; // lets browsers and CDNs reuse the redirect; 0 or absent disables
+}
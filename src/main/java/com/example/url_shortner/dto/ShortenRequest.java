@@ -8,4 +8,6 @@ public class ShortenRequest {
     private String customAlias;
     private Integer expiresInDays;
     private String expirationDate; // ISO format date string
+    private Boolean permanentRedirect; // 301 instead of 302
+    private Integer cacheMaxAgeSeconds; // lets browsers and CDNs reuse the redirect; 0 or absent disables
 }
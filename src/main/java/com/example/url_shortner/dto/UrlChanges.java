@@ -0,0 +1,19 @@
+package com.example.url_shortner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The user's links that changed since a sync cursor. When reset is true, changed is the full
+ * list and replaces the client's copy. Pass nextCursor back on the next poll.
+ */
+@Data
+@AllArgsConstructor
+public class UrlChanges {
+    private boolean reset;
+    private List<UrlResponse> changed;
+    private List<String> deleted;
+    private String nextCursor;
+}
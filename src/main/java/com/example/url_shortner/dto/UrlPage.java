@@ -0,0 +1,17 @@
+package com.example.url_shortner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a user's links, newest first. Pass nextCursor back to fetch the following page;
+ * it is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class UrlPage {
+    private List<UrlResponse> items;
+    private String nextCursor;
+}
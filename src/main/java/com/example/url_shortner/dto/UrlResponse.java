@@ -16,6 +16,8 @@ public class UrlResponse {
     private LocalDateTime createdAt;
     private LocalDateTime expiresAt;
     private long clickCount;
+    private boolean permanentRedirect;
+    private int cacheMaxAgeSeconds;
 
     /**
      * A convenient constructor to map from the UrlMapping entity to this DTO.
@@ -30,6 +32,20 @@ public class UrlResponse {
         this.createdAt = urlMapping.getCreatedAt();
         this.expiresAt = urlMapping.getExpiresAt();
         this.clickCount = urlMapping.getClickCount();
+        this.permanentRedirect = Boolean.TRUE.equals(urlMapping.getPermanentRedirect());
+        this.cacheMaxAgeSeconds = urlMapping.getCacheMaxAgeSeconds() == null ? 0 : urlMapping.getCacheMaxAgeSeconds();
+    }
+
+    public UrlResponse(UrlSummary urlSummary, String baseUrl) {
+        this.id = urlSummary.getId();
+        this.originalUrl = urlSummary.getOriginalUrl();
+        this.shortUrl = urlSummary.getShortUrl();
+        this.fullShortUrl = baseUrl + "/" + urlSummary.getShortUrl();
+        this.createdAt = urlSummary.getCreatedAt();
+        this.expiresAt = urlSummary.getExpiresAt();
+        this.clickCount = urlSummary.getClickCount();
+        this.permanentRedirect = Boolean.TRUE.equals(urlSummary.getPermanentRedirect());
+        this.cacheMaxAgeSeconds = urlSummary.getCacheMaxAgeSeconds() == null ? 0 : urlSummary.getCacheMaxAgeSeconds();
     }
 }
 
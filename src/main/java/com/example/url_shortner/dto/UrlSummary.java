@@ -0,0 +1,23 @@
+package com.example.url_shortner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a UrlMapping row. Selected directly by JPQL constructor expressions,
+ * so listing a user's links never creates managed entities.
+ */
+@Data
+@AllArgsConstructor
+public class UrlSummary {
+    private Long id;
+    private String originalUrl;
+    private String shortUrl;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+    private long clickCount;
+    private Boolean permanentRedirect;
+    private Integer cacheMaxAgeSeconds;
+}
@@ -0,0 +1,36 @@
+package com.example.url_shortner.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Clicks on one link within one minute, hour or day. Buckets are identified by their start in
+ * minutes since the epoch (UTC), which keeps rows small and range scans on the unique index cheap.
+ * Rows are written by {@code ClickStatsService} with plain JDBC; the entity only defines the table.
+ */
+@Entity
+@Table(name = "click_stats", indexes = {
+        @Index(name = "idx_click_stats_link_bucket", columnList = "url_mapping_id, granularity, bucket", unique = true),
+        // Lets old minute buckets be pruned without scanning every link
+        @Index(name = "idx_click_stats_granularity_bucket", columnList = "granularity, bucket")
+})
+@Data
+public class ClickStat {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Stats go with the link, including when the sweeper deletes it outside JPA
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "url_mapping_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private UrlMapping urlMapping;
+
+    private short granularity;
+
+    private int bucket;
+
+    private long clicks;
+}
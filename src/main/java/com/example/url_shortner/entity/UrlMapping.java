@@ -6,7 +6,21 @@ import lombok.Data; // Using @Data is simpler than separate @Getter/@Setter
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "url_mappings", indexes = @Index(columnList = "shortUrl", unique = true))
+@Table(name = "url_mappings", indexes = {
+        @Index(columnList = "shortUrl", unique = true),
+        // Serves the keyset-paginated "my urls" listing
+        @Index(name = "idx_url_mappings_user_created", columnList = "user_id, createdAt, id"),
+        // Serves the dashboard change feed and the per-user list version
+        @Index(name = "idx_url_mappings_user_updated", columnList = "user_id, updatedAt"),
+        // Finds a user's existing link for a URL when shortening with urls.dedup.enabled
+        @Index(name = "idx_url_mappings_user_url_hash", columnList = "user_id, originalUrlHash"),
+        // Lets the expired-link sweeper find its next batch without a table scan
+        @Index(name = "idx_url_mappings_expires_at", columnList = "expiresAt"),
+        // Lets edge nodes poll for links created since their snapshot
+        @Index(name = "idx_url_mappings_created_at", columnList = "createdAt"),
+        // Lets edge nodes poll for links whose redirect policy changed since their snapshot
+        @Index(name = "idx_url_mappings_policy_changed_at", columnList = "policyChangedAt")
+})
 @Data // @Data includes @Getter, @Setter, @ToString, @EqualsAndHashCode
 public class UrlMapping {
     @Id
@@ -18,6 +32,9 @@ public class UrlMapping {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String originalUrl;
 
+    // See OriginalUrlHash; null on rows older than the column, which are never reused
+    private Long originalUrlHash;
+
     @Column(nullable = false, unique = true, length = 10)
     private String shortUrl;
 
@@ -26,10 +43,23 @@ public class UrlMapping {
 
     private LocalDateTime expiresAt;
 
+    // Set on insert and whenever click counts are flushed; null on rows older than the column
+    private LocalDateTime updatedAt;
+
     private long clickCount = 0;
 
+    // The redirect policy (see RedirectPolicy); null on rows older than the columns, meaning an
+    // uncacheable 302
+    private Boolean permanentRedirect;
+
+    private Integer cacheMaxAgeSeconds;
+
+    // When the redirect policy was last changed; null if it never was
+    private LocalDateTime policyChangedAt;
+
+    // No foreign key: with sharding the row may live on a database that has no users table rows
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_id")
+    @JoinColumn(name = "user_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private User user;
 }
 
@@ -0,0 +1,32 @@
+package com.example.url_shortner.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records that a short code was deleted, by its owner or by the expired-link sweeper, so edge
+ * nodes serving from a redirect snapshot and dashboards syncing from a change cursor can drop
+ * it. Written with plain JDBC next to the delete and pruned by {@code ExpiredLinkSweeper} once
+ * no snapshot or valid cursor can predate it.
+ */
+@Entity
+@Table(name = "url_tombstones", indexes = {
+        @Index(name = "idx_url_tombstones_deleted_at", columnList = "deletedAt"),
+        @Index(name = "idx_url_tombstones_user_deleted_at", columnList = "userId, deletedAt")
+})
+@Data
+public class UrlTombstone {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 10)
+    private String shortUrl;
+
+    private Long userId;
+
+    @Column(nullable = false)
+    private LocalDateTime deletedAt;
+}
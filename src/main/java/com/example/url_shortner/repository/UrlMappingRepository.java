@@ -1,18 +1,80 @@
 package com.example.url_shortner.repository;
 
+import com.example.url_shortner.dto.UrlSummary;
 import com.example.url_shortner.entity.UrlMapping;
 import com.example.url_shortner.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+// Read-only lookups may be served by a read replica (see ReplicaRoutingDataSource) unless they
+// join a surrounding read-write transaction
 public interface UrlMappingRepository extends JpaRepository<UrlMapping, Long> {
+    @Transactional(readOnly = true)
     Optional<UrlMapping> findByShortUrl(String shortUrl);
-    boolean existsByShortUrl(String shortUrl);
 
+    @Transactional(readOnly = true)
+    boolean existsByShortUrl(String shortUrl);
 
+    // Which of the given codes are already taken, in one query
+    @Transactional(readOnly = true)
+    @Query("select u.shortUrl from UrlMapping u where u.shortUrl in :shortUrls")
+    List<String> findExistingShortUrls(@Param("shortUrls") Collection<String> shortUrls);
 
     // Method to find all URL mappings created by a specific user
+    @Transactional(readOnly = true)
     List<UrlMapping> findByUser(User user);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.url_shortner.dto.UrlSummary(u.id, u.originalUrl, u.shortUrl, u.createdAt, u.expiresAt, u.clickCount, "
+            + "u.permanentRedirect, u.cacheMaxAgeSeconds) "
+            + "from UrlMapping u where u.user.id = :userId order by u.createdAt desc, u.id desc")
+    List<UrlSummary> findSummariesByUserId(@Param("userId") Long userId);
+
+    // Links created or clicked since the given time, for the dashboard change feed
+    @Transactional(readOnly = true)
+    @Query("select new com.example.url_shortner.dto.UrlSummary(u.id, u.originalUrl, u.shortUrl, u.createdAt, u.expiresAt, u.clickCount, "
+            + "u.permanentRedirect, u.cacheMaxAgeSeconds) "
+            + "from UrlMapping u where u.user.id = :userId and u.updatedAt >= :since order by u.createdAt desc, u.id desc")
+    List<UrlSummary> findSummariesByUserIdUpdatedSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
+    @Transactional(readOnly = true)
+    @Query("select max(u.updatedAt) from UrlMapping u where u.user.id = :userId")
+    LocalDateTime findLastUpdatedAtByUserId(@Param("userId") Long userId);
+
+    // A user's live links whose normalized URL may equal one of the given hashes, for dedup
+    @Transactional(readOnly = true)
+    @Query("select new com.example.url_shortner.dto.UrlSummary(u.id, u.originalUrl, u.shortUrl, u.createdAt, u.expiresAt, u.clickCount, "
+            + "u.permanentRedirect, u.cacheMaxAgeSeconds) "
+            + "from UrlMapping u where u.user.id = :userId and u.originalUrlHash in :hashes "
+            + "and (u.expiresAt is null or u.expiresAt > :now)")
+    List<UrlSummary> findLiveSummariesByUserIdAndOriginalUrlHashes(@Param("userId") Long userId,
+                                                                  @Param("hashes") Collection<Long> hashes,
+                                                                  @Param("now") LocalDateTime now);
+
+    // First page of the keyset listing; the page size comes from the Pageable
+    @Transactional(readOnly = true)
+    @Query("select new com.example.url_shortner.dto.UrlSummary(u.id, u.originalUrl, u.shortUrl, u.createdAt, u.expiresAt, u.clickCount, "
+            + "u.permanentRedirect, u.cacheMaxAgeSeconds) "
+            + "from UrlMapping u where u.user.id = :userId order by u.createdAt desc, u.id desc")
+    List<UrlSummary> findPageByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    // Following pages: everything strictly after the (createdAt, id) cursor
+    @Transactional(readOnly = true)
+    @Query("select new com.example.url_shortner.dto.UrlSummary(u.id, u.originalUrl, u.shortUrl, u.createdAt, u.expiresAt, u.clickCount, "
+            + "u.permanentRedirect, u.cacheMaxAgeSeconds) "
+            + "from UrlMapping u where u.user.id = :userId "
+            + "and (u.createdAt < :createdAt or (u.createdAt = :createdAt and u.id < :id)) "
+            + "order by u.createdAt desc, u.id desc")
+    List<UrlSummary> findPageByUserIdAfter(@Param("userId") Long userId,
+                                           @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id,
+                                           Pageable pageable);
 }
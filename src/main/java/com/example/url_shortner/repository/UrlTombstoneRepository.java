@@ -0,0 +1,21 @@
+package com.example.url_shortner.repository;
+
+import com.example.url_shortner.entity.UrlTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Tombstones are written with JDBC next to each delete; this only reads them
+public interface UrlTombstoneRepository extends JpaRepository<UrlTombstone, Long> {
+    @Transactional(readOnly = true)
+    @Query("select t.shortUrl from UrlTombstone t where t.userId = :userId and t.deletedAt >= :since")
+    List<String> findShortUrlsDeletedSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
+    @Transactional(readOnly = true)
+    @Query("select max(t.deletedAt) from UrlTombstone t where t.userId = :userId")
+    LocalDateTime findLastDeletedAtByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,292 @@
+package com.example.url_shortner.service;
+
+import com.example.url_shortner.dto.BatchShortenResult;
+import com.example.url_shortner.dto.ShortenRequest;
+import com.example.url_shortner.dto.UrlResponse;
+import com.example.url_shortner.dto.UrlSummary;
+import com.example.url_shortner.entity.UrlMapping;
+import com.example.url_shortner.entity.User;
+import com.example.url_shortner.repository.UrlMappingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates many short links in one call. Every item is validated up front, rows are written
+ * with real JDBC batches (the IDENTITY key stops Hibernate from batching), and the cache
+ * entries for the whole batch go to Redis in a single pipeline. With sharding, each shard gets
+ * its own alias check, insert batches and id lookup. With {@code urls.dedup.enabled}, items
+ * without an alias reuse the user's existing link for the same URL, and repeats within the
+ * batch share one new link.
+ */
+@Service
+public class BatchShortenService {
+
+    static final String INSERT_SQL = "INSERT INTO url_mappings (original_url, original_url_hash, short_url, created_at, updated_at, expires_at, "
+            + "click_count, user_id, permanent_redirect, cache_max_age_seconds) VALUES (?, ?, ?, ?, ?, ?, 0, ?, ?, ?)";
+
+    private static final int MAX_CODE_ATTEMPTS = 5;
+
+    @Autowired
+    private UrlService urlService;
+
+    @Autowired
+    private UrlMappingRepository urlMappingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RedisUrlCache redisUrlCache;
+
+    @Autowired
+    private ShortCodeGenerator shortCodeGenerator;
+
+    @Autowired
+    private ShortCodeFilter shortCodeFilter;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private UrlMetrics urlMetrics;
+
+    @Value("${urls.batch.insert-chunk-size:500}")
+    private int chunkSize;
+
+    public List<BatchShortenResult> shortenUrls(List<ShortenRequest> requests, User user, String baseUrl) {
+        long start = System.nanoTime();
+        BatchShortenResult[] results = new BatchShortenResult[requests.size()];
+        List<UrlMapping> pending = new ArrayList<>();
+        // UrlMapping equality is field-based, so track items by identity
+        Set<UrlMapping> generated = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<UrlMapping, Integer> indexes = new IdentityHashMap<>();
+        Map<UrlMapping, String> normalizedUrls = new IdentityHashMap<>();
+        Map<UrlMapping, LocalDateTime> minimumReuseExpiries = new IdentityHashMap<>();
+
+        // 1. Validate every item before touching the database
+        Set<String> aliasesInBatch = new HashSet<>();
+        List<String> aliasesToCheck = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < requests.size(); i++) {
+            ShortenRequest shortenRequest = requests.get(i);
+            try {
+                if (shortenRequest == null || shortenRequest.getOriginalUrl() == null || shortenRequest.getOriginalUrl().trim().isEmpty()) {
+                    throw new RuntimeException("Original URL is required");
+                }
+                String customAlias = urlService.validateCustomAlias(shortenRequest.getCustomAlias());
+                if (customAlias != null && !aliasesInBatch.add(customAlias)) {
+                    throw new RuntimeException("Custom alias is used more than once in this batch");
+                }
+
+                UrlMapping urlMapping = new UrlMapping();
+                urlMapping.setOriginalUrl(shortenRequest.getOriginalUrl());
+                String normalizedUrl = OriginalUrlHash.normalize(shortenRequest.getOriginalUrl());
+                urlMapping.setOriginalUrlHash(OriginalUrlHash.of(normalizedUrl));
+                urlMapping.setUser(user);
+                urlMapping.setCreatedAt(now);
+                urlMapping.setUpdatedAt(now);
+                urlMapping.setExpiresAt(urlService.resolveExpiresAt(shortenRequest, now));
+                RedirectPolicy policy = urlService.resolveRedirectPolicy(shortenRequest.getPermanentRedirect(),
+                        shortenRequest.getCacheMaxAgeSeconds());
+                urlMapping.setPermanentRedirect(policy.isPermanent());
+                urlMapping.setCacheMaxAgeSeconds(policy.getMaxAgeSeconds());
+                if (customAlias != null) {
+                    urlMapping.setShortUrl(customAlias);
+                    if (shortCodeFilter.mightContain(customAlias)) {
+                        aliasesToCheck.add(customAlias);
+                    }
+                } else {
+                    // The code is drawn once the item is known not to be a duplicate
+                    generated.add(urlMapping);
+                    normalizedUrls.put(urlMapping, normalizedUrl);
+                    minimumReuseExpiries.put(urlMapping, urlService.minimumReuseExpiry(shortenRequest, urlMapping.getExpiresAt(), now));
+                }
+                pending.add(urlMapping);
+                indexes.put(urlMapping, i);
+            } catch (RuntimeException e) {
+                results[i] = new BatchShortenResult(i, null, e.getMessage());
+            }
+        }
+
+        // 2. Reuse existing links and collapse repeats; each repeat maps to the first item with its URL
+        Map<UrlMapping, UrlMapping> repeats = new IdentityHashMap<>();
+        int deduplicated = 0;
+        if (urlService.isDedupEnabled() && !generated.isEmpty()) {
+            List<Long> hashes = generated.stream().map(UrlMapping::getOriginalUrlHash).distinct().toList();
+            List<UrlSummary> existing = new ArrayList<>();
+            for (int from = 0; from < hashes.size(); from += chunkSize) {
+                existing.addAll(urlService.findDedupCandidates(user, hashes.subList(from, Math.min(hashes.size(), from + chunkSize))));
+            }
+            Map<String, UrlMapping> firstByUrl = new HashMap<>();
+            for (Iterator<UrlMapping> it = pending.iterator(); it.hasNext(); ) {
+                UrlMapping urlMapping = it.next();
+                if (!generated.contains(urlMapping)) {
+                    continue;
+                }
+                String normalizedUrl = normalizedUrls.get(urlMapping);
+                RedirectPolicy policy = RedirectPolicy.of(urlMapping.getPermanentRedirect(), urlMapping.getCacheMaxAgeSeconds());
+                UrlSummary reusable = UrlService.findReusable(existing, normalizedUrl, policy, minimumReuseExpiries.get(urlMapping));
+                if (reusable != null) {
+                    int index = indexes.get(urlMapping);
+                    results[index] = new BatchShortenResult(index, new UrlResponse(reusable, baseUrl), null);
+                    it.remove();
+                    deduplicated++;
+                    continue;
+                }
+                UrlMapping first = firstByUrl.putIfAbsent(normalizedUrl + '\n' + policy, urlMapping);
+                if (first != null && !first.getExpiresAt().isBefore(minimumReuseExpiries.get(urlMapping))) {
+                    repeats.put(urlMapping, first);
+                    it.remove();
+                    deduplicated++;
+                }
+            }
+        }
+        for (UrlMapping urlMapping : pending) {
+            if (generated.contains(urlMapping)) {
+                urlMapping.setShortUrl(shortCodeGenerator.nextCode());
+            }
+        }
+
+        // 3. One query for every alias the filter could not rule out
+        if (!aliasesToCheck.isEmpty()) {
+            Set<String> taken = new HashSet<>();
+            shardRouter.partition(aliasesToCheck, alias -> alias).forEach((shard, aliases) ->
+                    taken.addAll(shardRouter.onShard(shard, () -> urlMappingRepository.findExistingShortUrls(aliases))));
+            pending.removeIf(urlMapping -> {
+                if (!generated.contains(urlMapping) && taken.contains(urlMapping.getShortUrl())) {
+                    int index = indexes.get(urlMapping);
+                    results[index] = new BatchShortenResult(index, null, "Custom alias is already taken");
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        // 4. Insert in JDBC batches
+        List<UrlMapping> saved = new ArrayList<>(pending.size());
+        shardRouter.partition(pending, UrlMapping::getShortUrl).forEach((shard, rows) -> {
+            for (int from = 0; from < rows.size(); from += chunkSize) {
+                List<UrlMapping> chunk = rows.subList(from, Math.min(rows.size(), from + chunkSize));
+                saved.addAll(insertChunk(shard, chunk, generated, indexes, results));
+            }
+        });
+        assignIds(saved);
+
+        // 5. Cache everything that was created in one Redis round trip
+        cacheAll(saved);
+        shortCodeFilter.addAll(saved.stream().map(UrlMapping::getShortUrl).toList());
+
+        for (UrlMapping urlMapping : saved) {
+            int index = indexes.get(urlMapping);
+            results[index] = new BatchShortenResult(index, new UrlResponse(urlMapping, baseUrl), null);
+        }
+        repeats.forEach((repeat, first) -> {
+            int index = indexes.get(repeat);
+            BatchShortenResult firstResult = results[indexes.get(first)];
+            results[index] = new BatchShortenResult(index, firstResult.getUrl(), firstResult.getError());
+        });
+        if (deduplicated > 0) {
+            urlMetrics.recordDeduplicated(deduplicated);
+        }
+        urlMetrics.recordBatchShorten(start, saved.size());
+        return List.of(results);
+    }
+
+    private List<UrlMapping> insertChunk(int shard, List<UrlMapping> chunk, Set<UrlMapping> generated,
+                                         Map<UrlMapping, Integer> indexes, BatchShortenResult[] results) {
+        try {
+            shardRouter.onShard(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, chunk.stream().map(this::toRow).toList())));
+            return chunk;
+        } catch (DataIntegrityViolationException e) {
+            // The whole chunk rolled back; redo it row by row to find the conflicting items
+            List<UrlMapping> inserted = new ArrayList<>(chunk.size());
+            for (UrlMapping urlMapping : chunk) {
+                if (insertOne(urlMapping, generated.contains(urlMapping))) {
+                    inserted.add(urlMapping);
+                } else {
+                    int index = indexes.get(urlMapping);
+                    results[index] = new BatchShortenResult(index, null, "Custom alias is already taken");
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private boolean insertOne(UrlMapping urlMapping, boolean generatedCode) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // A retried code may belong to another shard, so route every attempt
+                shardRouter.onShardFor(urlMapping.getShortUrl(), () -> jdbcTemplate.update(INSERT_SQL, toRow(urlMapping)));
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                if (!generatedCode) {
+                    return false;
+                }
+                if (attempt >= MAX_CODE_ATTEMPTS) {
+                    throw e;
+                }
+                urlMetrics.recordCodeRetry();
+                urlMapping.setShortUrl(shortCodeGenerator.nextCode());
+            }
+        }
+    }
+
+    private Object[] toRow(UrlMapping urlMapping) {
+        return new Object[]{
+                urlMapping.getOriginalUrl(),
+                urlMapping.getOriginalUrlHash(),
+                urlMapping.getShortUrl(),
+                urlMapping.getCreatedAt(),
+                urlMapping.getUpdatedAt(),
+                urlMapping.getExpiresAt(),
+                urlMapping.getUser().getId(),
+                urlMapping.getPermanentRedirect(),
+                urlMapping.getCacheMaxAgeSeconds()
+        };
+    }
+
+    private void assignIds(List<UrlMapping> saved) {
+        Map<String, UrlMapping> byCode = new HashMap<>();
+        saved.forEach(urlMapping -> byCode.put(urlMapping.getShortUrl(), urlMapping));
+        shardRouter.partition(saved, UrlMapping::getShortUrl).forEach((shard, rows) -> {
+            for (int from = 0; from < rows.size(); from += chunkSize) {
+                List<UrlMapping> chunk = rows.subList(from, Math.min(rows.size(), from + chunkSize));
+                String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                shardRouter.onShard(shard, () -> jdbcTemplate.query("SELECT id, short_url FROM url_mappings WHERE short_url IN (" + placeholders + ")",
+                        rs -> {
+                            byCode.get(rs.getString(2)).setId(rs.getLong(1));
+                        },
+                        chunk.stream().map(UrlMapping::getShortUrl).toArray()));
+            }
+        });
+    }
+
+    private void cacheAll(List<UrlMapping> saved) {
+        Map<String, CachedUrl> entries = new LinkedHashMap<>();
+        for (UrlMapping urlMapping : saved) {
+            entries.put(urlMapping.getShortUrl(), new CachedUrl(urlMapping.getOriginalUrl(), urlMapping.getExpiresAt(),
+                    RedirectPolicy.of(urlMapping.getPermanentRedirect(), urlMapping.getCacheMaxAgeSeconds())));
+        }
+        redisUrlCache.putAll(entries);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.url_shortner.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resolved redirect target as held by the in-process cache.
+ * @param originalUrl The long URL to redirect to.
+ * @param expiresAt When the link expires, or null if unknown or never.
+ * @param policy The redirect status and Cache-Control to answer with.
+ * @param cachedAtNanos System.nanoTime() when the entry was loaded into the cache.
+ * @param loadNanos How long loading it took, which drives early refresh.
+ * @param ttlNanos How long the in-process cache keeps it, capped by the link's expiry; 0 until it is cached.
+ */
+public record CachedUrl(String originalUrl, LocalDateTime expiresAt, RedirectPolicy policy, long cachedAtNanos, long loadNanos,
+                        long ttlNanos) {
+
+    public CachedUrl(String originalUrl, LocalDateTime expiresAt) {
+        this(originalUrl, expiresAt, RedirectPolicy.DEFAULT);
+    }
+
+    public CachedUrl(String originalUrl, LocalDateTime expiresAt, RedirectPolicy policy) {
+        this(originalUrl, expiresAt, policy, System.nanoTime(), 0);
+    }
+
+    public CachedUrl(String originalUrl, LocalDateTime expiresAt, RedirectPolicy policy, long cachedAtNanos, long loadNanos) {
+        this(originalUrl, expiresAt, policy, cachedAtNanos, loadNanos, 0);
+    }
+
+    public CachedUrl withTtlNanos(long ttlNanos) {
+        return new CachedUrl(originalUrl, expiresAt, policy, cachedAtNanos, loadNanos, ttlNanos);
+    }
+
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.isBefore(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.url_shortner.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects redirect clicks in memory and writes them to the database in batches.
+ * Recording a click only touches a per-code LongAdder, so the redirect path never waits on
+ * Postgres and hot links no longer contend on the same row lock.
+ * <p>
+ * The adders live in an {@link Epoch} that each flush swaps for a fresh one. Recorders mark
+ * themselves on a stripe of the epoch while they add, so the flush waits for the few that
+ * were still adding to the old epoch and then reads it with nothing writing to it: every click
+ * lands in exactly one flush, and idle codes drop out with the old map.
+ */
+@Component
+public class ClickCountAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickCountAggregator.class);
+
+    static final String INCREMENT_SQL = "UPDATE url_mappings SET click_count = click_count + ?, updated_at = ? WHERE short_url = ?";
+
+    // Power of two; each stripe sits on its own cache line
+    private static final int STRIPES = 64;
+    private static final int PADDING = 8;
+
+    /**
+     * The clicks recorded between two flushes, and how many recorders are adding to them.
+     */
+    private static final class Epoch {
+        final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+        final AtomicLongArray recorders = new AtomicLongArray(STRIPES * PADDING);
+    }
+
+    private volatile Epoch current = new Epoch();
+    private final LongAdder unflushed = new LongAdder();
+    private final AtomicBoolean earlyFlushScheduled = new AtomicBoolean();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    // Upper bound on clicks held only in memory; reaching it triggers a flush ahead of schedule
+    @Value("${clicks.max-unflushed:10000}")
+    private long maxUnflushed;
+
+    public void record(String shortUrl) {
+        record(shortUrl, 1);
+    }
+
+    public void record(String shortUrl, long clicks) {
+        add(shortUrl, clicks);
+        unflushed.add(clicks);
+        if (unflushed.sum() >= maxUnflushed && earlyFlushScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${clicks.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            earlyFlushScheduled.set(false);
+            Map<String, Long> increments = drain();
+            // Shards fail independently; only the counts of a failed shard are retried
+            RuntimeException failure = null;
+            for (Map<String, Long> shardIncrements : shardRouter.partition(increments).values()) {
+                try {
+                    writeIncrements(shardIncrements);
+                } catch (RuntimeException e) {
+                    shardIncrements.forEach(this::requeue);
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Click count flush failed, counts will be retried on the next flush", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Applies the given per-code increments as one JDBC batch per shard, each in its own
+     * transaction so a failed shard applies none of its increments. Failures are left to the
+     * caller, which decides how the counts are retried.
+     */
+    public void writeIncrements(Map<String, Long> increments) {
+        // The new count shows up in dashboard change feeds. updated_at is indexed, so these updates
+        // can't be HOT: each one also writes idx_url_mappings_user_updated, once per code per flush
+        LocalDateTime now = LocalDateTime.now();
+        shardRouter.partition(increments).forEach((shard, shardIncrements) -> {
+            List<Object[]> batch = new ArrayList<>(shardIncrements.size());
+            shardIncrements.forEach((shortUrl, clicks) -> batch.add(new Object[]{clicks, now, shortUrl}));
+            shardRouter.onShard(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INCREMENT_SQL, batch)));
+        });
+    }
+
+    private void requeue(String shortUrl, long clicks) {
+        add(shortUrl, clicks);
+        unflushed.add(clicks);
+    }
+
+    private void add(String shortUrl, long clicks) {
+        // A thread always uses the same stripe, so its own mark and unmark cancel out there
+        int stripe = (int) (Thread.currentThread().threadId() & (STRIPES - 1)) * PADDING;
+        while (true) {
+            Epoch epoch = current;
+            epoch.recorders.incrementAndGet(stripe);
+            try {
+                // Checked after marking: once a flush has swapped the epoch it may already be reading it
+                if (epoch == current) {
+                    epoch.counts.computeIfAbsent(shortUrl, k -> new LongAdder()).add(clicks);
+                    return;
+                }
+            } finally {
+                epoch.recorders.decrementAndGet(stripe);
+            }
+        }
+    }
+
+    private Map<String, Long> drain() {
+        Epoch epoch = current;
+        current = new Epoch();
+        // A recorder that marks a stripe after it was seen clear also sees the new epoch and moves there
+        for (int stripe = 0; stripe < STRIPES * PADDING; stripe += PADDING) {
+            while (epoch.recorders.get(stripe) != 0) {
+                Thread.yield();
+            }
+        }
+        Map<String, Long> increments = new HashMap<>(epoch.counts.size());
+        epoch.counts.forEach((shortUrl, adder) -> {
+            long clicks = adder.sum();
+            if (clicks > 0) {
+                increments.put(shortUrl, clicks);
+                unflushed.add(-clicks);
+            }
+        });
+        return increments;
+    }
+
+    public long getUnflushedClicks() {
+        return unflushed.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.url_shortner.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of redirect clicks in memory-mapped segment files under
+ * {@code clicks.journal.dir}. Every click is a fixed 48-byte record:
+ * <pre>
+ *  0  int   commit marker, written last with release semantics
+ *  4  byte  code length, followed by up to 20 ASCII code bytes
+ * 25  byte user-agent class
+ * 32  long  timestamp (epoch millis)
+ * 40  long  referrer hash (FNV-1a, 0 when absent)
+ * </pre>
+ * Appending reserves a slot with a single atomic add and fills it with absolute puts, so the
+ * redirect path takes no lock, does no I/O and allocates nothing. A full segment is replaced
+ * by the next one under a lock that only the thread that overflowed it takes.
+ * {@link ClickJournalReplayer} reads the records back and applies them to the database.
+ */
+@Component
+public class ClickJournal {
+
+    public enum UserAgentClass {
+        UNKNOWN, BOT, MOBILE, DESKTOP;
+
+        public static UserAgentClass of(String userAgent) {
+            if (userAgent == null || userAgent.isEmpty()) {
+                return UNKNOWN;
+            }
+            if (userAgent.contains("bot") || userAgent.contains("Bot") || userAgent.contains("spider")
+                    || userAgent.contains("crawl") || userAgent.startsWith("curl") || userAgent.startsWith("Wget")) {
+                return BOT;
+            }
+            if (userAgent.contains("Mobile") || userAgent.contains("Android") || userAgent.contains("iPhone")) {
+                return MOBILE;
+            }
+            return DESKTOP;
+        }
+    }
+
+    static final int RECORD_SIZE = 48;
+    static final int MAX_CODE_LENGTH = 20;
+    static final int COMMITTED = 0x434C4B31;
+    static final int CODE_LENGTH_OFFSET = 4;
+    static final int CODE_OFFSET = 5;
+    static final int USER_AGENT_OFFSET = 25;
+    static final int TIMESTAMP_OFFSET = 32;
+    static final int REFERRER_OFFSET = 40;
+
+    private static final VarHandle MARKER = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final String SEGMENT_PREFIX = "clicks-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final Logger log = LoggerFactory.getLogger(ClickJournal.class);
+
+    private static final class Segment {
+        final long sequence;
+        final MappedByteBuffer buffer;
+        final int limit;
+        final AtomicInteger position = new AtomicInteger();
+
+        Segment(long sequence, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.buffer = buffer;
+            this.limit = buffer.capacity() - buffer.capacity() % RECORD_SIZE;
+        }
+    }
+
+    @Value("${clicks.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${clicks.journal.dir:./data/click-journal}")
+    private String dir;
+
+    @Value("${clicks.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    private Path directory;
+    private volatile Segment current;
+    private volatile long sealedAtNanos;
+    private long firstSequence;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            directory = Paths.get(dir);
+            Files.createDirectories(directory);
+            long[] existing = listSegments();
+            // Never append to a segment left by a previous run; its tail may be half written
+            firstSequence = existing.length == 0 ? 1 : existing[existing.length - 1] + 1;
+            current = openSegment(firstSequence);
+            log.info("Click journal writing to {} from segment {}", directory.toAbsolutePath(), firstSequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open click journal in " + dir, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Journals one click.
+     * @return false if the click could not be journalled and must be counted some other way.
+     */
+    public boolean append(String shortUrl, String referrer, String userAgent) {
+        if (!enabled || shortUrl.length() > MAX_CODE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < shortUrl.length(); i++) {
+            if (shortUrl.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        long timestamp = System.currentTimeMillis();
+        long referrerHash = hash(referrer);
+        int userAgentClass = UserAgentClass.of(userAgent).ordinal();
+
+        while (true) {
+            Segment segment = current;
+            int offset = segment.position.getAndAdd(RECORD_SIZE);
+            if (offset >= 0 && offset <= segment.limit - RECORD_SIZE) {
+                ByteBuffer buffer = segment.buffer;
+                buffer.put(offset + CODE_LENGTH_OFFSET, (byte) shortUrl.length());
+                for (int i = 0; i < shortUrl.length(); i++) {
+                    buffer.put(offset + CODE_OFFSET + i, (byte) shortUrl.charAt(i));
+                }
+                buffer.put(offset + USER_AGENT_OFFSET, (byte) userAgentClass);
+                buffer.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+                buffer.putLong(offset + REFERRER_OFFSET, referrerHash);
+                MARKER.setRelease(buffer, offset, COMMITTED);
+                return true;
+            }
+            if (!rotate(segment)) {
+                return false;
+            }
+        }
+    }
+
+    private synchronized boolean rotate(Segment full) {
+        if (current != full) {
+            return true;
+        }
+        try {
+            Segment next = openSegment(full.sequence + 1);
+            // Published before the new segment so isSettled never pairs it with a stale seal time
+            sealedAtNanos = System.nanoTime();
+            current = next;
+            return true;
+        } catch (IOException e) {
+            log.warn("Cannot open click journal segment {}", full.sequence + 1, e);
+            return false;
+        }
+    }
+
+    private Segment openSegment(long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(sequence),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(sequence, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSizeMb * 1024L * 1024L));
+        }
+    }
+
+    /**
+     * Flushes the segment being written to disk, bounding what an OS crash can lose.
+     */
+    public void sync() {
+        Segment segment = current;
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sync();
+    }
+
+    long currentSequence() {
+        return current.sequence;
+    }
+
+    /**
+     * Whether no writer can still be filling a slot in the given segment: it was either left by
+     * a previous run, or sealed long enough ago for in-flight appends to have finished.
+     */
+    boolean isSettled(long sequence, long graceMillis) {
+        long writing = current.sequence;
+        if (sequence < firstSequence || sequence < writing - 1) {
+            return true;
+        }
+        return sequence == writing - 1 && System.nanoTime() - sealedAtNanos > TimeUnit.MILLISECONDS.toNanos(graceMillis);
+    }
+
+    Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    long[] listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .mapToLong(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toArray();
+        }
+    }
+
+    static boolean isCommitted(ByteBuffer buffer, int offset) {
+        return (int) MARKER.getAcquire(buffer, offset) == COMMITTED;
+    }
+
+    static String readCode(ByteBuffer buffer, int offset) {
+        int length = buffer.get(offset + CODE_LENGTH_OFFSET);
+        byte[] code = new byte[length];
+        buffer.get(offset + CODE_OFFSET, code);
+        return new String(code, StandardCharsets.US_ASCII);
+    }
+
+    static long readTimestamp(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + TIMESTAMP_OFFSET);
+    }
+
+    private static long hash(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.url_shortner.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays {@link ClickJournal} segments into {@code url_mappings.click_count} and the
+ * {@link ClickStatsService} histograms.
+ * Each run reads committed records from the last checkpoint onwards, applies them as one batch
+ * of increments, then saves the new position to a checkpoint file and deletes the segments it
+ * has finished. After a crash replay resumes from the checkpoint, so every journalled click is
+ * counted at least once; a crash between the database write and the checkpoint can count the
+ * last batch twice.
+ */
+@Component
+public class ClickJournalReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickJournalReplayer.class);
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    @Autowired
+    private ClickJournal clickJournal;
+
+    @Autowired
+    private ClickCountAggregator clickCountAggregator;
+
+    @Autowired
+    private ClickStatsService clickStatsService;
+
+    @Value("${clicks.journal.max-events-per-replay:100000}")
+    private int maxEventsPerReplay;
+
+    // How long a sealed segment is given for appends that reserved a slot just before rotation
+    @Value("${clicks.journal.settle-ms:1000}")
+    private long settleMillis;
+
+    private long checkpointSequence;
+    private int checkpointOffset;
+
+    private long readerSequence = -1;
+    private ByteBuffer reader;
+
+    @PostConstruct
+    public void init() {
+        if (!clickJournal.isEnabled()) {
+            return;
+        }
+        Path checkpoint = clickJournal.getDirectory().resolve(CHECKPOINT_FILE);
+        try {
+            if (Files.exists(checkpoint)) {
+                String[] position = Files.readString(checkpoint, StandardCharsets.US_ASCII).trim().split(" ");
+                checkpointSequence = Long.parseLong(position[0]);
+                checkpointOffset = Integer.parseInt(position[1]);
+                log.info("Click journal replay resuming at segment {} offset {}", checkpointSequence, checkpointOffset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read click journal checkpoint " + checkpoint, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${clicks.journal.replay-interval-ms:1000}")
+    public synchronized void replay() {
+        if (!clickJournal.isEnabled()) {
+            return;
+        }
+        try {
+            clickJournal.sync();
+            Map<String, Long> increments = new HashMap<>();
+            Map<String, Map<Integer, Long>> minutes = new HashMap<>();
+            List<Path> finished = new ArrayList<>();
+            long sequence = checkpointSequence;
+            int offset = checkpointOffset;
+            int events = 0;
+
+            for (long segment : clickJournal.listSegments()) {
+                if (segment < sequence) {
+                    // Replayed by an earlier run that failed to delete it
+                    finished.add(clickJournal.segmentPath(segment));
+                    continue;
+                }
+                if (segment > sequence) {
+                    sequence = segment;
+                    offset = 0;
+                }
+                ByteBuffer buffer = reader(segment);
+                boolean settled = clickJournal.isSettled(segment, settleMillis);
+                int limit = buffer.capacity() - buffer.capacity() % ClickJournal.RECORD_SIZE;
+                while (offset <= limit - ClickJournal.RECORD_SIZE && events < maxEventsPerReplay) {
+                    if (ClickJournal.isCommitted(buffer, offset)) {
+                        String shortUrl = ClickJournal.readCode(buffer, offset);
+                        int minute = (int) (ClickJournal.readTimestamp(buffer, offset) / 60_000);
+                        increments.merge(shortUrl, 1L, Long::sum);
+                        minutes.computeIfAbsent(shortUrl, k -> new HashMap<>()).merge(minute, 1L, Long::sum);
+                        events++;
+                    } else if (!settled) {
+                        // Not written yet; everything after it is newer
+                        break;
+                    }
+                    // A settled segment's empty slots are holes left by a crash and are skipped
+                    offset += ClickJournal.RECORD_SIZE;
+                }
+                if (!settled || offset <= limit - ClickJournal.RECORD_SIZE) {
+                    break;
+                }
+                finished.add(clickJournal.segmentPath(segment));
+                reader = null;
+                readerSequence = -1;
+            }
+
+            if (!increments.isEmpty()) {
+                clickCountAggregator.writeIncrements(increments);
+                clickStatsService.recordMinutes(minutes);
+            }
+            if (sequence != checkpointSequence || offset != checkpointOffset) {
+                writeCheckpoint(sequence, offset);
+            }
+            for (Path segment : finished) {
+                Files.deleteIfExists(segment);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Click journal replay failed, will resume from segment {} offset {}",
+                    checkpointSequence, checkpointOffset, e);
+        }
+    }
+
+    private ByteBuffer reader(long segment) throws IOException {
+        if (segment != readerSequence) {
+            try (FileChannel channel = FileChannel.open(clickJournal.segmentPath(segment), StandardOpenOption.READ)) {
+                reader = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            readerSequence = segment;
+        }
+        return reader;
+    }
+
+    private void writeCheckpoint(long sequence, int offset) throws IOException {
+        Path checkpoint = clickJournal.getDirectory().resolve(CHECKPOINT_FILE);
+        Path temp = clickJournal.getDirectory().resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temp, sequence + " " + offset, StandardCharsets.US_ASCII);
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointSequence = sequence;
+        checkpointOffset = offset;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        replay();
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.url_shortner.service;
+
+import com.example.url_shortner.dto.ClickStats;
+import com.example.url_shortner.entity.UrlMapping;
+import com.example.url_shortner.entity.User;
+import com.example.url_shortner.repository.UrlMappingRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-link click histograms in minute, hour and day buckets.
+ * Each link that is being clicked has a small ring of minute slots, each slot packing the epoch
+ * minute into its high 32 bits and the count into the low 32 bits, so recording a click is one
+ * CAS with no allocation. A periodic rollup drains the finished minutes into the click_stats
+ * table, adding to the minute, hour and day rows they fall into.
+ */
+@Component
+public class ClickStatsService {
+
+    public enum Granularity {
+        MINUTE(1, Duration.ofHours(1)),
+        HOUR(60, Duration.ofDays(7)),
+        DAY(1440, Duration.ofDays(365));
+
+        private final int minutes;
+        private final Duration defaultRange;
+
+        Granularity(int minutes, Duration defaultRange) {
+            this.minutes = minutes;
+            this.defaultRange = defaultRange;
+        }
+
+        int bucketOf(int epochMinute) {
+            return epochMinute - epochMinute % minutes;
+        }
+    }
+
+    private record BucketKey(long urlMappingId, int granularity, int bucket) implements Comparable<BucketKey> {
+        @Override
+        public int compareTo(BucketKey other) {
+            int byId = Long.compare(urlMappingId, other.urlMappingId);
+            if (byId != 0) {
+                return byId;
+            }
+            int byGranularity = Integer.compare(granularity, other.granularity);
+            return byGranularity != 0 ? byGranularity : Integer.compare(bucket, other.bucket);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ClickStatsService.class);
+
+    // A power of two, and more minutes than a rollup interval can leave undrained
+    private static final int SLOTS = 16;
+    private static final long MINUTE_MASK = 0xFFFFFFFF00000000L;
+    // Written into every slot of a ring that is being dropped; no real minute packs to it
+    private static final long RETIRED = -1L;
+    private static final int ID_LOOKUP_CHUNK = 1000;
+
+    private static final String UPDATE_SQL =
+            "UPDATE click_stats SET clicks = clicks + ? WHERE url_mapping_id = ? AND granularity = ? AND bucket = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO click_stats (url_mapping_id, granularity, bucket, clicks) VALUES (?, ?, ?, ?)";
+    private static final String RANGE_SQL =
+            "SELECT bucket, clicks FROM click_stats WHERE url_mapping_id = ? AND granularity = ? AND bucket >= ? AND bucket < ? ORDER BY bucket";
+
+    private final ConcurrentHashMap<String, AtomicLongArray> rings = new ConcurrentHashMap<>();
+
+    // Minute counts that did not fit a ring or failed to be written, by code then epoch minute
+    private final Map<String, Map<Integer, Long>> pending = new HashMap<>();
+
+    private long lastPruneMillis;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UrlMappingRepository urlMappingRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${stats.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.minute-retention-hours:48}")
+    private long minuteRetentionHours;
+
+    @Value("${stats.hour-retention-days:400}")
+    private long hourRetentionDays;
+
+    @Value("${stats.max-buckets:10000}")
+    private int maxBuckets;
+
+    public void record(String shortUrl, long epochMillis) {
+        if (!enabled) {
+            return;
+        }
+        int minute = (int) (epochMillis / 60_000);
+        int slot = minute & (SLOTS - 1);
+        long packedMinute = (long) minute << 32;
+        AtomicLongArray ring = ring(shortUrl);
+        while (true) {
+            long value = ring.get(slot);
+            if (value == RETIRED) {
+                // The rollup is dropping this ring as idle; it may still be in the map, so take it out and start a new one
+                rings.remove(shortUrl, ring);
+                ring = ring(shortUrl);
+            } else if (value == 0) {
+                if (ring.compareAndSet(slot, 0, packedMinute | 1)) {
+                    return;
+                }
+            } else if ((value & MINUTE_MASK) == packedMinute) {
+                if (ring.compareAndSet(slot, value, value + 1)) {
+                    return;
+                }
+            } else {
+                // The slot still holds an undrained older minute, or this click is a late replay
+                addPending(shortUrl, minute, 1);
+                return;
+            }
+        }
+    }
+
+    private AtomicLongArray ring(String shortUrl) {
+        AtomicLongArray ring = rings.get(shortUrl);
+        return ring != null ? ring : rings.computeIfAbsent(shortUrl, k -> new AtomicLongArray(SLOTS));
+    }
+
+    /**
+     * Adds already aggregated minute counts, as replayed from the click journal.
+     */
+    public void recordMinutes(Map<String, Map<Integer, Long>> minutes) {
+        if (!enabled) {
+            return;
+        }
+        minutes.forEach((shortUrl, counts) -> counts.forEach((minute, clicks) -> addPending(shortUrl, minute, clicks)));
+    }
+
+    private void addPending(String shortUrl, int minute, long clicks) {
+        synchronized (pending) {
+            pending.computeIfAbsent(shortUrl, k -> new HashMap<>()).merge(minute, clicks, Long::sum);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.rollup-interval-ms:30000}")
+    public void rollup() {
+        rollup((int) (System.currentTimeMillis() / 60_000));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Includes the minute in progress
+        rollup(Integer.MAX_VALUE);
+    }
+
+    private synchronized void rollup(int beforeMinute) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Map<Integer, Long>> minutes;
+        synchronized (pending) {
+            minutes = new HashMap<>(pending);
+            pending.clear();
+        }
+        drainRings(minutes, beforeMinute);
+
+        // click_stats rows live on the same shard as their link
+        shardRouter.partition(minutes).forEach((shard, shardMinutes) -> {
+            try {
+                shardRouter.onShard(shard, () -> write(shardMinutes));
+            } catch (RuntimeException e) {
+                shardMinutes.forEach((shortUrl, counts) -> counts.forEach((minute, clicks) -> addPending(shortUrl, minute, clicks)));
+                log.warn("Click stats rollup failed, buckets will be retried on the next run", e);
+            }
+        });
+        pruneIfDue();
+    }
+
+    private void drainRings(Map<String, Map<Integer, Long>> minutes, int beforeMinute) {
+        for (Map.Entry<String, AtomicLongArray> entry : rings.entrySet()) {
+            AtomicLongArray ring = entry.getValue();
+            boolean idle = true;
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (!drainSlot(entry.getKey(), ring, slot, beforeMinute, minutes)) {
+                    idle = false;
+                }
+            }
+            if (idle) {
+                // Seal every slot before dropping the ring, so a click can't land in it once it's gone
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    retireSlot(entry.getKey(), ring, slot, minutes);
+                }
+                rings.remove(entry.getKey(), ring);
+            }
+        }
+    }
+
+    /**
+     * Marks the slot {@link #RETIRED}, first draining whatever was recorded into it since the
+     * ring was found idle. Recorders that then reach the slot move to a new ring.
+     */
+    private void retireSlot(String shortUrl, AtomicLongArray ring, int slot, Map<String, Map<Integer, Long>> minutes) {
+        while (!ring.compareAndSet(slot, 0, RETIRED)) {
+            drainSlot(shortUrl, ring, slot, Integer.MAX_VALUE, minutes);
+        }
+    }
+
+    /**
+     * Empties the slot if it holds a minute before {@code beforeMinute}.
+     * @return true if the slot is empty afterwards.
+     */
+    private boolean drainSlot(String shortUrl, AtomicLongArray ring, int slot, int beforeMinute,
+                              Map<String, Map<Integer, Long>> minutes) {
+        while (true) {
+            long value = ring.get(slot);
+            if (value == 0) {
+                return true;
+            }
+            int minute = (int) (value >>> 32);
+            if (minute >= beforeMinute) {
+                return false;
+            }
+            if (ring.compareAndSet(slot, value, 0)) {
+                minutes.computeIfAbsent(shortUrl, k -> new HashMap<>()).merge(minute, value & 0xFFFFFFFFL, Long::sum);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds the minute counts to their minute, hour and day rows: an UPDATE batch, then an INSERT
+     * batch for the rows that did not exist yet. Keys are sorted so concurrent rollups on
+     * different nodes lock rows in the same order; if two nodes insert the same new row, the
+     * loser's counts are retried on its next run and take the UPDATE path.
+     */
+    private void write(Map<String, Map<Integer, Long>> minutes) {
+        Map<String, Long> ids = resolveIds(new ArrayList<>(minutes.keySet()));
+        Map<BucketKey, Long> buckets = new HashMap<>();
+        minutes.forEach((shortUrl, counts) -> {
+            Long id = ids.get(shortUrl);
+            if (id == null) {
+                // Deleted since it was clicked
+                return;
+            }
+            counts.forEach((minute, clicks) -> {
+                for (Granularity granularity : Granularity.values()) {
+                    buckets.merge(new BucketKey(id, granularity.ordinal(), granularity.bucketOf(minute)), clicks, Long::sum);
+                }
+            });
+        });
+        if (buckets.isEmpty()) {
+            return;
+        }
+
+        List<BucketKey> keys = new ArrayList<>(buckets.keySet());
+        Collections.sort(keys);
+        List<Object[]> updates = new ArrayList<>(keys.size());
+        for (BucketKey key : keys) {
+            updates.add(new Object[]{buckets.get(key), key.urlMappingId(), key.granularity(), key.bucket()});
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+            List<Object[]> inserts = new ArrayList<>();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    BucketKey key = keys.get(i);
+                    inserts.add(new Object[]{key.urlMappingId(), key.granularity(), key.bucket(), buckets.get(key)});
+                }
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+            }
+        });
+    }
+
+    private Map<String, Long> resolveIds(List<String> shortUrls) {
+        Map<String, Long> ids = new HashMap<>(shortUrls.size() * 2);
+        for (int from = 0; from < shortUrls.size(); from += ID_LOOKUP_CHUNK) {
+            List<String> chunk = shortUrls.subList(from, Math.min(from + ID_LOOKUP_CHUNK, shortUrls.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT id, short_url FROM url_mappings WHERE short_url IN (" + placeholders + ")",
+                    rs -> {
+                        ids.put(rs.getString(2), rs.getLong(1));
+                    },
+                    chunk.toArray());
+        }
+        return ids;
+    }
+
+    private void pruneIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruneMillis < Duration.ofHours(1).toMillis()) {
+            return;
+        }
+        lastPruneMillis = now;
+        try {
+            int nowMinute = (int) (now / 60_000);
+            int minutes = 0;
+            int hours = 0;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                minutes += shardRouter.onShard(shard, () -> jdbcTemplate.update("DELETE FROM click_stats WHERE granularity = ? AND bucket < ?",
+                        Granularity.MINUTE.ordinal(), nowMinute - (int) Duration.ofHours(minuteRetentionHours).toMinutes()));
+                hours += shardRouter.onShard(shard, () -> jdbcTemplate.update("DELETE FROM click_stats WHERE granularity = ? AND bucket < ?",
+                        Granularity.HOUR.ordinal(), nowMinute - (int) Duration.ofDays(hourRetentionDays).toMinutes()));
+            }
+            if (minutes + hours > 0) {
+                log.info("Pruned {} minute and {} hour click buckets", minutes, hours);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Click stats pruning failed", e);
+        }
+    }
+
+    /**
+     * Returns the owner's click histogram for a link over [from, to).
+     * @return The stats, or null if the link does not exist.
+     */
+    public ClickStats getStats(String shortUrl, User user, Instant from, Instant to, String granularityName) {
+        Granularity granularity;
+        try {
+            granularity = Granularity.valueOf(granularityName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Granularity must be one of minute, hour or day");
+        }
+        if (to == null) {
+            to = Instant.now();
+        }
+        if (from == null) {
+            from = to.minus(granularity.defaultRange);
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(from, to).toMinutes() / granularity.minutes > maxBuckets) {
+            throw new IllegalArgumentException("Range covers more than " + maxBuckets + " " + granularityName + " buckets");
+        }
+
+        int shard = shardRouter.shardFor(shortUrl);
+        UrlMapping urlMapping = shardRouter.onShard(shard, () -> urlMappingRepository.findByShortUrl(shortUrl)).orElse(null);
+        if (urlMapping == null) {
+            return null;
+        }
+        if (!urlMapping.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("You don't have permission to view stats for this URL");
+        }
+
+        int fromBucket = granularity.bucketOf((int) (from.toEpochMilli() / 60_000));
+        int toMinute = (int) Math.ceilDiv(to.toEpochMilli(), 60_000L);
+        List<ClickStats.Bucket> buckets = new ArrayList<>();
+        long[] total = {0};
+        shardRouter.onShard(shard, () -> jdbcTemplate.query(RANGE_SQL, rs -> {
+            long clicks = rs.getLong(2);
+            buckets.add(new ClickStats.Bucket(Instant.ofEpochSecond(rs.getInt(1) * 60L), clicks));
+            total[0] += clicks;
+        }, urlMapping.getId(), granularity.ordinal(), fromBucket, toMinute));
+
+        return new ClickStats(shortUrl, granularity.name().toLowerCase(Locale.ROOT), from, to, total[0], buckets);
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.url_shortner.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Lets an edge node answer redirects from a local {@link RedirectSnapshot} file, so lookups
+ * need neither Redis nor Postgres and the index costs no heap however many links it holds.
+ * Enabled with {@code edge.snapshot.enabled=true}.
+ * <p>
+ * A full snapshot is written every {@code edge.snapshot.rebuild-interval-ms} and swapped in
+ * atomically; on restart the newest file is mapped straight away. Between rebuilds, links
+ * created, deleted or given a new redirect policy since the snapshot's watermark are polled
+ * every {@code edge.snapshot.delta-interval-ms} into a small in-memory overlay that takes
+ * precedence over the file. Policy changes are found through url_mappings.policy_changed_at;
+ * deletions are read from url_tombstones, written next to every delete by {@link UrlService}
+ * and by {@link ExpiredLinkSweeper}. Expired links stay in the snapshot and are rejected by
+ * their expiry like any cached entry.
+ */
+@Component
+public class EdgeRedirectIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(EdgeRedirectIndex.class);
+
+    private static final String FILE_PREFIX = "redirects-";
+    private static final String FILE_SUFFIX = ".snap";
+
+    private static final String SNAPSHOT_SQL = "SELECT short_url, original_url, expires_at, permanent_redirect, cache_max_age_seconds "
+            + "FROM url_mappings WHERE expires_at IS NULL OR expires_at > ?";
+    private static final String CREATED_SQL = "SELECT short_url, original_url, expires_at, permanent_redirect, cache_max_age_seconds, created_at "
+            + "FROM url_mappings WHERE created_at >= ?";
+    private static final String POLICY_CHANGED_SQL = "SELECT short_url, original_url, expires_at, permanent_redirect, cache_max_age_seconds, "
+            + "policy_changed_at FROM url_mappings WHERE policy_changed_at >= ?";
+    private static final String DELETED_SQL = "SELECT short_url, deleted_at FROM url_tombstones WHERE deleted_at >= ?";
+
+    /**
+     * A change not yet in the snapshot; a null cachedUrl means the link was deleted.
+     */
+    private record Change(CachedUrl cachedUrl, LocalDateTime at) {
+    }
+
+    private final Map<String, Change> changes = new ConcurrentHashMap<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${edge.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${edge.snapshot.dir:./data/edge-snapshot}")
+    private Path dir;
+
+    @Value("${edge.snapshot.rebuild-interval-ms:86400000}")
+    private long rebuildIntervalMs;
+
+    // How far back each poll reaches, to catch rows whose transaction committed after a later one
+    @Value("${edge.snapshot.overlap-ms:60000}")
+    private long overlapMs;
+
+    private volatile RedirectSnapshot snapshot;
+
+    // Changes at or after this time are fetched by the next delta poll
+    private volatile LocalDateTime deltaFrom;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+            Path newest = null;
+            try (Stream<Path> files = Files.list(dir)) {
+                newest = files.filter(this::isSnapshotFile).max(Comparator.comparing(Path::getFileName)).orElse(null);
+            }
+            if (newest != null) {
+                RedirectSnapshot loaded = RedirectSnapshot.open(newest);
+                deltaFrom = loaded.getWatermark();
+                snapshot = loaded;
+                log.info("Mapped redirect snapshot {} with {} links", newest, loaded.getEntryCount());
+            }
+        } catch (IOException e) {
+            // The first rebuild writes a fresh one
+            log.warn("Could not load a redirect snapshot from {}", dir, e);
+        }
+    }
+
+    private boolean isSnapshotFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * @return The URL and expiry, or null if the snapshot does not know the link. Only valid once {@link #isReady()}.
+     */
+    public CachedUrl lookup(String shortUrl) {
+        Change change = changes.get(shortUrl);
+        if (change != null) {
+            return change.cachedUrl();
+        }
+        return snapshot.lookup(shortUrl);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${edge.snapshot.rebuild-interval-ms:86400000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        RedirectSnapshot previous = snapshot;
+        if (previous != null && previous.getWatermark().isAfter(LocalDateTime.now().minus(Duration.ofMillis(rebuildIntervalMs)))) {
+            // Loaded at startup and still recent enough
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime watermark = now.minus(Duration.ofMillis(overlapMs));
+        Path target = dir.resolve(FILE_PREFIX + start + FILE_SUFFIX);
+        Path temporary = dir.resolve(FILE_PREFIX + start + ".tmp");
+        try {
+            long rows = 0;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                Long shardRows = shardRouter.onShard(shard, () -> jdbcTemplate.queryForObject("SELECT count(*) FROM url_mappings", Long.class));
+                rows += shardRows == null ? 0 : shardRows;
+            }
+
+            // Rows too large for a record; their redirects fall through to the regular lookup
+            long[] skipped = new long[1];
+            try (RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(temporary, rows, watermark)) {
+                JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+                streaming.setFetchSize(10_000);
+                for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                    shardRouter.onShard(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                            streaming.query(SNAPSHOT_SQL, rs -> {
+                                try {
+                                    Timestamp expiresAt = rs.getTimestamp(3);
+                                    if (!writer.add(rs.getString(1), rs.getString(2), expiresAt == null ? null : expiresAt.toLocalDateTime(),
+                                            RedirectPolicy.of(rs.getObject(4, Boolean.class), rs.getObject(5, Integer.class)))) {
+                                        skipped[0]++;
+                                    }
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            }, Timestamp.valueOf(now))));
+                }
+                writer.finish();
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+
+            RedirectSnapshot fresh = RedirectSnapshot.open(target);
+            if (deltaFrom == null) {
+                deltaFrom = watermark;
+            }
+            snapshot = fresh;
+            // Everything before the watermark is in the new file
+            changes.values().removeIf(change -> change.at().isBefore(watermark));
+            // Includes files from older formats; readers still holding the old mapping keep it until it is collected
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(this::isSnapshotFile).filter(file -> !file.equals(target)).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            log.info("Wrote redirect snapshot with {} links ({} skipped) in {} ms",
+                    fresh.getEntryCount(), skipped[0], System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Redirect snapshot rebuild failed, keeping the previous snapshot", e);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Stale temporary files are harmless; the next rebuild uses a new name
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${edge.snapshot.delta-interval-ms:10000}")
+    public void applyDeltas() {
+        LocalDateTime from = deltaFrom;
+        if (!enabled || from == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp since = Timestamp.valueOf(from.minus(Duration.ofMillis(overlapMs)));
+        try {
+            List<Integer> applied = shardRouter.onEveryShard(shard -> {
+                int[] count = new int[1];
+                // Created and policy-changed rows carry the same columns, the last one being when it happened
+                for (String sql : new String[]{CREATED_SQL, POLICY_CHANGED_SQL}) {
+                    jdbcTemplate.query(sql, rs -> {
+                        Timestamp expiresAt = rs.getTimestamp(3);
+                        apply(rs.getString(1), new Change(new CachedUrl(rs.getString(2), expiresAt == null ? null : expiresAt.toLocalDateTime(),
+                                RedirectPolicy.of(rs.getObject(4, Boolean.class), rs.getObject(5, Integer.class))), rs.getTimestamp(6).toLocalDateTime()));
+                        count[0]++;
+                    }, since);
+                }
+                jdbcTemplate.query(DELETED_SQL, rs -> {
+                    apply(rs.getString(1), new Change(null, rs.getTimestamp(2).toLocalDateTime()));
+                    count[0]++;
+                }, since);
+                return count[0];
+            });
+            deltaFrom = now;
+            log.debug("Applied {} redirect changes since {}", applied.stream().mapToInt(Integer::intValue).sum(), since);
+        } catch (RuntimeException e) {
+            // The next poll reaches back to the same point
+            log.warn("Redirect snapshot delta poll failed", e);
+        }
+    }
+
+    // The overlap replays changes, so the newest event for a code wins whatever the arrival order
+    private void apply(String shortUrl, Change change) {
+        changes.merge(shortUrl, change, (existing, incoming) -> incoming.at().isBefore(existing.at()) ? existing : incoming);
+    }
+
+    public int getPendingChanges() {
+        return changes.size();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.url_shortner.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deletes expired links in the background so the redirect path never has to write.
+ * Each run removes at most {@code sweeper.max-batches-per-run} batches of
+ * {@code sweeper.batch-size} rows, found through the expires_at index. Each batch is deleted
+ * together with its tombstones in one short transaction, and the sweeper pauses between
+ * batches to keep row locks short. Once a batch commits, the matching Redis keys are deleted
+ * in one pipelined call and the in-process caches are invalidated on every node. A short Redis
+ * lock keeps nodes from sweeping at the same time. Tombstones of deleted links are pruned once
+ * they are older than {@code edge.snapshot.tombstone-retention-hours}.
+ */
+@Component
+public class ExpiredLinkSweeper {
+
+    static final String LOCK_KEY = "url-shortener:sweeper-lock";
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiredLinkSweeper.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Set while a sweep is queued or running, so a slow one is never overlapped by the next
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // The sweep and its pauses get a thread of their own, away from the scheduler and from the
+    // task executor that serves requests
+    private final ExecutorService sweepExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("expired-link-sweeper").daemon().factory());
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisUrlCache redisUrlCache;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private LocalUrlCache localUrlCache;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${sweeper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sweeper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${sweeper.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${sweeper.pause-between-batches-ms:200}")
+    private long pauseBetweenBatchesMs;
+
+    @Value("${sweeper.interval-ms:60000}")
+    private long intervalMs;
+
+    // Must outlast the edge snapshot rebuild interval, or an edge node could miss a delete; also
+    // the oldest dashboard sync cursor that is still accepted
+    @Value("${edge.snapshot.tombstone-retention-hours:72}")
+    private long tombstoneRetentionHours;
+
+    /**
+     * Hands the sweep to its own thread: its pauses between batches would otherwise hold a
+     * scheduler thread, or a task executor thread that request fan-out and exports need.
+     */
+    @Scheduled(initialDelayString = "${sweeper.initial-delay-ms:30000}", fixedDelayString = "${sweeper.interval-ms:60000}")
+    public void sweep() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sweepExecutor.execute(() -> {
+                try {
+                    sweepAll();
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            log.warn("Could not start the expired link sweep", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweepExecutor.shutdownNow();
+    }
+
+    void sweepAll() {
+        // Without Redis no node can take the lock, so sweeping pauses until it recovers
+        boolean acquired = circuitBreaker.call(
+                () -> Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId, Duration.ofMillis(intervalMs))),
+                () -> false);
+        if (!acquired) {
+            return;
+        }
+
+        int deleted = 0;
+        try {
+            // The batch budget applies to each shard
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                    int removed = shardRouter.onShard(shard, this::sweepBatch);
+                    deleted += removed;
+                    if (removed < batchSize) {
+                        break;
+                    }
+                    Thread.sleep(pauseBetweenBatchesMs);
+                }
+                shardRouter.onShard(shard, () -> jdbcTemplate.update("DELETE FROM url_tombstones WHERE deleted_at < ?",
+                        LocalDateTime.now().minusHours(tombstoneRetentionHours)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Expired link sweep failed after deleting {} links", deleted, e);
+        }
+        if (deleted > 0) {
+            log.info("Swept {} expired links", deleted);
+        }
+    }
+
+    private int sweepBatch() {
+        // The rows and their tombstones go together, so a delete is never missed by edge nodes and dashboards
+        List<String> shortUrls = transactionTemplate.execute(status -> deleteBatch());
+        if (shortUrls.isEmpty()) {
+            return 0;
+        }
+        redisUrlCache.deleteAll(shortUrls);
+        localUrlCache.invalidateAllEverywhere(shortUrls);
+        return shortUrls.size();
+    }
+
+    private List<String> deleteBatch() {
+        List<Long> ids = new ArrayList<>(batchSize);
+        List<String> shortUrls = new ArrayList<>(batchSize);
+        List<Object[]> tombstones = new ArrayList<>(batchSize);
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.query("SELECT id, short_url, user_id FROM url_mappings WHERE expires_at < ? ORDER BY expires_at LIMIT ?",
+                rs -> {
+                    ids.add(rs.getLong(1));
+                    shortUrls.add(rs.getString(2));
+                    tombstones.add(new Object[]{rs.getString(2), rs.getObject(3, Long.class), now});
+                },
+                now, batchSize);
+        if (ids.isEmpty()) {
+            return shortUrls;
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update("DELETE FROM url_mappings WHERE id IN (" + placeholders + ")", ids.toArray());
+        // Dashboards syncing from a change cursor drop the swept links
+        jdbcTemplate.batchUpdate("INSERT INTO url_tombstones (short_url, user_id, deleted_at) VALUES (?, ?, ?)", tombstones);
+        return shortUrls;
+    }
+}
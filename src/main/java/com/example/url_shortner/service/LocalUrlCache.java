@@ -0,0 +1,156 @@
+package com.example.url_shortner.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded in-JVM cache that sits in front of Redis on the redirect path.
+ * Caffeine's W-TinyLFU admission keeps the frequently clicked codes resident, and every entry
+ * lives at most {@code cache.local.ttl-seconds}, never past the link's own expiry. Deletes are
+ * broadcast to all nodes over a Redis pub/sub channel; the TTL bounds staleness if a message
+ * is missed. Entries that are still being read can be refreshed shortly before their TTL ends
+ * (probabilistic early expiration, "XFetch"), so hot codes do not all miss at once.
+ */
+@Component
+public class LocalUrlCache {
+
+    public static final String INVALIDATION_CHANNEL = "url-shortener:l1-invalidate";
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Value("${cache.local.max-size:100000}")
+    private long maxSize;
+
+    @Value("${cache.local.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    // Scales how far ahead of expiry refreshes start; 0 turns early refresh off
+    @Value("${cache.local.early-refresh-beta:1.0}")
+    private double earlyRefreshBeta;
+
+    private Cache<String, CachedUrl> cache;
+    private long maxTtlNanos;
+
+    @PostConstruct
+    public void init() {
+        maxTtlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, CachedUrl>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedUrl value, long currentTime) {
+                        return value.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedUrl value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedUrl value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public CachedUrl get(String shortUrl) {
+        CachedUrl cached = cache.getIfPresent(shortUrl);
+        if (cached != null && cached.isExpired()) {
+            cache.invalidate(shortUrl);
+            return null;
+        }
+        return cached;
+    }
+
+    public void put(String shortUrl, CachedUrl cachedUrl) {
+        cache.put(shortUrl, cachedUrl.withTtlNanos(ttlNanos(cachedUrl)));
+    }
+
+    // cache.local.ttl-seconds, or less if the link expires sooner
+    private long ttlNanos(CachedUrl cachedUrl) {
+        if (cachedUrl.expiresAt() == null) {
+            return maxTtlNanos;
+        }
+        long untilExpiry = Duration.between(LocalDateTime.now(), cachedUrl.expiresAt()).toNanos();
+        return Math.max(0, Math.min(maxTtlNanos, untilExpiry));
+    }
+
+    /**
+     * XFetch: true with a probability that rises as the entry nears the end of its TTL, sooner
+     * for entries that were slow to load, so a hot entry is reloaded a little before it would
+     * have expired while a rarely read one simply expires.
+     */
+    public boolean shouldRefreshEarly(CachedUrl cachedUrl) {
+        if (earlyRefreshBeta <= 0 || cachedUrl.loadNanos() <= 0) {
+            return false;
+        }
+        long remainingNanos = cachedUrl.cachedAtNanos() + cachedUrl.ttlNanos() - System.nanoTime();
+        return remainingNanos <= -cachedUrl.loadNanos() * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Drops the entry on this node only. Called by the pub/sub listener.
+     */
+    public void invalidateLocal(String shortUrl) {
+        cache.invalidate(shortUrl);
+    }
+
+    /**
+     * Drops the entry here and asks every other node to do the same. If Redis is unavailable
+     * the other nodes keep their copy until it expires, at most cache.local.ttl-seconds.
+     */
+    public void invalidateEverywhere(String shortUrl) {
+        cache.invalidate(shortUrl);
+        circuitBreaker.run(() -> redisTemplate.convertAndSend(INVALIDATION_CHANNEL, shortUrl));
+    }
+
+    /**
+     * Drops a batch of entries here and everywhere else with a single newline-separated message.
+     */
+    public void invalidateAllEverywhere(Collection<String> shortUrls) {
+        if (shortUrls.isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(shortUrls);
+        circuitBreaker.run(() -> redisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.join("\n", shortUrls)));
+    }
+
+    /**
+     * Handles a broadcast from another node, which may carry several codes.
+     */
+    public void invalidateFromMessage(String payload) {
+        for (String shortUrl : payload.split("\n")) {
+            cache.invalidate(shortUrl);
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counters for this tier.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public Cache<String, CachedUrl> getNativeCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.url_shortner.service;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * A fixed-width key for a long URL, so "has this user shortened this URL before" is an index
+ * lookup on (user_id, original_url_hash) instead of a comparison of TEXT columns. The hash is
+ * the first 8 bytes of the SHA-256 of the normalized URL; callers compare the normalized URLs
+ * of any matches, so a collision costs a missed reuse and never a wrong link.
+ */
+public final class OriginalUrlHash {
+
+    private OriginalUrlHash() {
+    }
+
+    /**
+     * Lower-cases the scheme and host, drops the default port and turns an empty path into "/".
+     * The path, query and fragment are kept as they are, since servers may treat them
+     * case-sensitively. Anything that does not parse as an absolute URI is only trimmed.
+     */
+    public static String normalize(String originalUrl) {
+        String trimmed = originalUrl.trim();
+        try {
+            URI uri = new URI(trimmed);
+            if (uri.getScheme() == null || uri.getRawAuthority() == null || uri.getHost() == null) {
+                return trimmed;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            boolean defaultPort = (port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"));
+            StringBuilder normalized = new StringBuilder(trimmed.length())
+                    .append(scheme).append("://");
+            if (uri.getRawUserInfo() != null) {
+                normalized.append(uri.getRawUserInfo()).append('@');
+            }
+            normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+            if (port != -1 && !defaultPort) {
+                normalized.append(':').append(port);
+            }
+            String path = uri.getRawPath();
+            normalized.append(path == null || path.isEmpty() ? "/" : path);
+            if (uri.getRawQuery() != null) {
+                normalized.append('?').append(uri.getRawQuery());
+            }
+            if (uri.getRawFragment() != null) {
+                normalized.append('#').append(uri.getRawFragment());
+            }
+            return normalized.toString();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+    }
+
+    /**
+     * @param normalizedUrl The result of {@link #normalize(String)}.
+     */
+    public static long of(String normalizedUrl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalizedUrl.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.url_shortner.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client token buckets for the endpoints a single client can abuse, with a separate rate
+ * and burst per {@link Limit} ({@code ratelimit.<limit>.per-second} and {@code .burst}).
+ * <p>
+ * Each bucket is one long, the theoretical arrival time of the next request (GCRA, which
+ * behaves exactly like a token bucket refilled at the rate). A request is allowed if that time
+ * is no more than burst - 1 intervals ahead of now, and takes one interval; so a check is a
+ * read and one compare-and-set, with no lock and no allocation. Keys are hashed onto a fixed
+ * array of {@code ratelimit.stripes} buckets per limit rather than kept in a map, which bounds
+ * memory however many clients show up and needs no eviction: an idle bucket is simply in the
+ * past. Two active keys on the same stripe share a budget, which only ever limits early.
+ * <p>
+ * A request may take several tokens at once (a batch shorten takes one per URL). It is allowed
+ * whenever at least one token is left and may overdraw the bucket, so a batch larger than the
+ * burst still goes through once and the client then waits until the debt is paid off.
+ * <p>
+ * With {@code ratelimit.redis.enabled=true} the shorten and auth limits are enforced across
+ * nodes by the same algorithm in a Redis script, timed by the Redis clock. Redirects always
+ * stay local, so the hot path never waits on Redis; while the Redis circuit is open the local
+ * buckets take over.
+ */
+@Component
+public class RateLimiter {
+
+    public enum Limit {
+        REDIRECT, SHORTEN, AUTH
+    }
+
+    private static final String REDIS_KEY_PREFIX = "ratelimit:";
+
+    // ARGV[1] is the request's cost in microseconds; returns 0 if allowed, otherwise the microseconds until it would be
+    private static final RedisScript<Long> GCRA_SCRIPT = new DefaultRedisScript<>(
+            "local time = redis.call('TIME') "
+                    + "local now = tonumber(time[1]) * 1000000 + tonumber(time[2]) "
+                    + "local stored = redis.call('GET', KEYS[1]) "
+                    + "local tat = stored and math.max(tonumber(stored), now) or now "
+                    + "local wait = tat - now - tonumber(ARGV[2]) "
+                    + "if wait > 0 then return wait end "
+                    + "local next = tat + tonumber(ARGV[1]) "
+                    + "redis.call('SET', KEYS[1], string.format('%d', next), 'PX', math.ceil((next - now) / 1000) + 1) "
+                    + "return 0",
+            Long.class);
+
+    private static final class Buckets {
+        final long intervalNanos;
+        // How far ahead of now the next arrival time may be: burst - 1 intervals
+        final long toleranceNanos;
+        final AtomicLongArray arrivals;
+        final Counter rejected;
+
+        Buckets(long intervalNanos, long toleranceNanos, int stripes, Counter rejected) {
+            this.intervalNanos = intervalNanos;
+            this.toleranceNanos = toleranceNanos;
+            this.arrivals = new AtomicLongArray(stripes);
+            this.rejected = rejected;
+        }
+    }
+
+    private final Map<Limit, Buckets> buckets = new EnumMap<>(Limit.class);
+
+    private LongSupplier nanoClock = System::nanoTime;
+
+    // Times are measured from startup, so a never-used bucket (0) is always in the past
+    private long startNanos;
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Value("${ratelimit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ratelimit.stripes:65536}")
+    private int stripes;
+
+    @Value("${ratelimit.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    // A rate of 0 turns the limit off
+    @Value("${ratelimit.redirect.per-second:100}")
+    private double redirectPerSecond;
+
+    @Value("${ratelimit.redirect.burst:500}")
+    private int redirectBurst;
+
+    @Value("${ratelimit.shorten.per-second:5}")
+    private double shortenPerSecond;
+
+    @Value("${ratelimit.shorten.burst:30}")
+    private int shortenBurst;
+
+    @Value("${ratelimit.auth.per-second:1}")
+    private double authPerSecond;
+
+    @Value("${ratelimit.auth.burst:10}")
+    private int authBurst;
+
+    public RateLimiter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @PostConstruct
+    public void init() {
+        startNanos = nanoClock.getAsLong() - 1;
+        // Without any buckets every request is allowed
+        if (!enabled) {
+            return;
+        }
+        register(Limit.REDIRECT, redirectPerSecond, redirectBurst);
+        register(Limit.SHORTEN, shortenPerSecond, shortenBurst);
+        register(Limit.AUTH, authPerSecond, authBurst);
+    }
+
+    private void register(Limit limit, double perSecond, int burst) {
+        if (perSecond <= 0) {
+            return;
+        }
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        long intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        buckets.put(limit, new Buckets(intervalNanos, (Math.max(1, burst) - 1) * intervalNanos, stripeCount,
+                Counter.builder("ratelimit.rejected")
+                        .tag("limit", limit.name().toLowerCase(Locale.ROOT))
+                        .description("Requests answered with 429 because the client's bucket was empty")
+                        .register(registry)));
+    }
+
+    /**
+     * Takes one request from the key's bucket.
+     * @param key Identifies the client, e.g. a username or an IP address.
+     * @return 0 if the request may proceed, otherwise the nanoseconds until it would.
+     */
+    public long tryAcquire(Limit limit, String key) {
+        return tryAcquire(limit, key, 1);
+    }
+
+    /**
+     * Takes {@code permits} requests from the key's bucket at once, overdrawing it if needed.
+     * @return 0 if the requests may proceed, otherwise the nanoseconds until the bucket has a token again.
+     */
+    public long tryAcquire(Limit limit, String key, int permits) {
+        Buckets bucket = buckets.get(limit);
+        if (bucket == null || permits <= 0) {
+            return 0;
+        }
+        long costNanos = permits * bucket.intervalNanos;
+        long waitNanos = redisEnabled && limit != Limit.REDIRECT
+                ? circuitBreaker.call(() -> acquireInRedis(limit, bucket, key, costNanos), () -> acquireLocally(bucket, key, costNanos))
+                : acquireLocally(bucket, key, costNanos);
+        if (waitNanos > 0) {
+            bucket.rejected.increment();
+        }
+        return waitNanos;
+    }
+
+    private long acquireLocally(Buckets bucket, String key, long costNanos) {
+        int stripe = stripe(key, bucket.arrivals.length());
+        long now = nanoClock.getAsLong() - startNanos;
+        while (true) {
+            long arrival = bucket.arrivals.get(stripe);
+            long start = Math.max(arrival, now);
+            long wait = start - now - bucket.toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.arrivals.compareAndSet(stripe, arrival, start + costNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private long acquireInRedis(Limit limit, Buckets bucket, String key, long costNanos) {
+        Long waitMicros = redisTemplate.execute(GCRA_SCRIPT, List.of(REDIS_KEY_PREFIX + limit.name().toLowerCase(Locale.ROOT) + ":" + key),
+                Long.toString(TimeUnit.NANOSECONDS.toMicros(costNanos)),
+                Long.toString(TimeUnit.NANOSECONDS.toMicros(bucket.toleranceNanos)));
+        return waitMicros == null ? 0 : TimeUnit.MICROSECONDS.toNanos(waitMicros);
+    }
+
+    // Lets tests move time by hand; set before init()
+    void setNanoClock(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * The key a signed-in user's shorten requests are counted under.
+     */
+    public static String userKey(String username) {
+        return "user:" + username;
+    }
+
+    // Spreads similar keys (neighbouring IPs, numbered usernames) over the stripes
+    private static int stripe(String key, int stripes) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (stripes - 1);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.url_shortner.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * How a link's redirect may be cached outside this service: a permanent (301) or temporary
+ * (302) redirect, and the max-age browsers and shared caches may reuse it for. Clicks answered
+ * from those caches never reach us, so only links that don't need exact counts should allow it.
+ * The Cache-Control value is built once per policy; a link that expires sooner than its max-age
+ * gets the remaining lifetime instead.
+ */
+public final class RedirectPolicy {
+
+    public static final RedirectPolicy DEFAULT = new RedirectPolicy(false, 0);
+
+    // Redirects of links without a max-age must not be stored by anyone
+    private static final String NO_STORE = "no-store";
+
+    private static final RedirectPolicy PERMANENT_NO_STORE = new RedirectPolicy(true, 0);
+
+    private final boolean permanent;
+    private final int maxAgeSeconds;
+    private final String cacheControl;
+
+    private RedirectPolicy(boolean permanent, int maxAgeSeconds) {
+        this.permanent = permanent;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.cacheControl = maxAgeSeconds > 0 ? "public, max-age=" + maxAgeSeconds : NO_STORE;
+    }
+
+    /**
+     * @param permanent Null on rows older than the column, meaning temporary.
+     * @param maxAgeSeconds Null on rows older than the column, meaning not cacheable.
+     */
+    public static RedirectPolicy of(Boolean permanent, Integer maxAgeSeconds) {
+        boolean isPermanent = Boolean.TRUE.equals(permanent);
+        int maxAge = maxAgeSeconds == null ? 0 : Math.max(0, maxAgeSeconds);
+        if (maxAge == 0) {
+            return isPermanent ? PERMANENT_NO_STORE : DEFAULT;
+        }
+        return new RedirectPolicy(isPermanent, maxAge);
+    }
+
+    public boolean isPermanent() {
+        return permanent;
+    }
+
+    public int getMaxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    public int status() {
+        return permanent ? 301 : 302;
+    }
+
+    /**
+     * The Cache-Control header for a link with the given expiry (null if it has none).
+     */
+    public String cacheControl(LocalDateTime expiresAt) {
+        if (maxAgeSeconds == 0 || expiresAt == null) {
+            return cacheControl;
+        }
+        long untilExpiry = Duration.between(LocalDateTime.now(), expiresAt).getSeconds();
+        if (untilExpiry >= maxAgeSeconds) {
+            return cacheControl;
+        }
+        return untilExpiry > 0 ? "public, max-age=" + untilExpiry : NO_STORE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RedirectPolicy other && permanent == other.permanent && maxAgeSeconds == other.maxAgeSeconds;
+    }
+
+    @Override
+    public int hashCode() {
+        return Boolean.hashCode(permanent) * 31 + maxAgeSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return status() + " " + cacheControl;
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.url_shortner.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * A read-only hash index from short code to original URL and expiry, kept in a file and
+ * memory-mapped, so it lives in the page cache rather than on the heap and opening it costs
+ * nothing however many links it holds. Lookups probe the mapped slots and compare the code in
+ * place; only the URL of a match is copied out.
+ * <p>
+ * Layout: a 64-byte header, then {@code slotCount} 8-byte slots (open addressing, linear
+ * probing), then 8-byte aligned records. A slot holds a 24-bit hash fingerprint above the
+ * record's offset divided by 8, and 0 when empty. A record is the expiry (a LocalDateTime as
+ * UTC epoch millis, or {@link Long#MIN_VALUE} for none), the URL's byte length, the
+ * {@link RedirectPolicy} (permanent in the top bit, max-age below), the code's length, the
+ * ASCII code and the UTF-8 URL.
+ */
+public final class RedirectSnapshot {
+
+    private static final int MAGIC = 0x52534E50;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_FIXED_SIZE = 18;
+    private static final long NO_EXPIRY = Long.MIN_VALUE;
+    private static final long OFFSET_MASK = (1L << 40) - 1;
+
+    // A mapping is limited to 2 GiB, so the file is mapped in windows that each overlap the
+    // next by the largest record; any record then lies entirely inside the window it starts in.
+    // The window size only affects how the file is mapped, not its format
+    static final long WINDOW = 1L << 30;
+    static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private static final double MAX_LOAD = 0.9;
+
+    private final Path path;
+    private final long window;
+    private final MappedByteBuffer[] windows;
+    private final long slotMask;
+    private final long entryCount;
+    private final LocalDateTime watermark;
+
+    private RedirectSnapshot(Path path, long window, MappedByteBuffer[] windows) {
+        this.path = path;
+        this.window = window;
+        this.windows = windows;
+        this.slotMask = windows[0].getLong(8) - 1;
+        this.entryCount = windows[0].getLong(16);
+        this.watermark = decode(windows[0].getLong(24));
+    }
+
+    public static RedirectSnapshot open(Path path) throws IOException {
+        return open(path, WINDOW);
+    }
+
+    static RedirectSnapshot open(Path path, long window) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a redirect snapshot: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer[] windows = map(channel, FileChannel.MapMode.READ_ONLY, size, window);
+            if (windows[0].getInt(0) != MAGIC || windows[0].getInt(4) != VERSION) {
+                throw new IOException("Not a redirect snapshot: " + path);
+            }
+            return new RedirectSnapshot(path, window, windows);
+        }
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long size, long window) throws IOException {
+        int count = (int) Math.max(1, Math.ceilDiv(size, window));
+        MappedByteBuffer[] windows = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * window;
+            windows[i] = channel.map(mode, start, Math.min(size - start, window + MAX_RECORD_SIZE));
+        }
+        return windows;
+    }
+
+    /**
+     * @return The URL and expiry, or null if the code is not in the snapshot.
+     */
+    public CachedUrl lookup(String shortUrl) {
+        long hash = hash(shortUrl);
+        long fingerprint = hash >>> 40;
+        for (long slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+            long entry = getLong(HEADER_SIZE + slot * 8);
+            if (entry == 0) {
+                return null;
+            }
+            if (entry >>> 40 == fingerprint) {
+                long record = (entry & OFFSET_MASK) << 3;
+                if (codeEquals(record, shortUrl)) {
+                    return read(record, shortUrl.length());
+                }
+            }
+        }
+    }
+
+    private boolean codeEquals(long record, String shortUrl) {
+        MappedByteBuffer mapped = windows[(int) (record / window)];
+        int base = (int) (record % window);
+        int length = shortUrl.length();
+        if (mapped.getShort(base + 16) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = shortUrl.charAt(i);
+            if (c > 0x7F || mapped.get(base + RECORD_FIXED_SIZE + i) != (byte) c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CachedUrl read(long record, int codeLength) {
+        MappedByteBuffer mapped = windows[(int) (record / window)];
+        int base = (int) (record % window);
+        long expiresAt = mapped.getLong(base);
+        byte[] url = new byte[mapped.getInt(base + 8)];
+        int policy = mapped.getInt(base + 12);
+        mapped.get(base + RECORD_FIXED_SIZE + codeLength, url);
+        return new CachedUrl(new String(url, StandardCharsets.UTF_8), expiresAt == NO_EXPIRY ? null : decode(expiresAt),
+                RedirectPolicy.of(policy < 0, policy & Integer.MAX_VALUE));
+    }
+
+    private long getLong(long position) {
+        return windows[(int) (position / window)].getLong((int) (position % window));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Every change before this time is reflected in the snapshot.
+     */
+    public LocalDateTime getWatermark() {
+        return watermark;
+    }
+
+    // FNV-1a over the chars, then the SplitMix64 finaliser; part of the file format
+    private static long hash(String shortUrl) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < shortUrl.length(); i++) {
+            hash ^= shortUrl.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private static long encode(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime decode(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    /**
+     * Writes a snapshot file. The slot table is sized up front from the expected entry count,
+     * with room for it to grow by three quarters while the rows are streamed.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final long window;
+        private final MappedByteBuffer[] table;
+        private final long slotCount;
+        private final LocalDateTime watermark;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private long dataPosition;
+        private long entryCount;
+        private boolean finished;
+
+        public Writer(Path path, long expectedEntries, LocalDateTime watermark) throws IOException {
+            this(path, expectedEntries, watermark, WINDOW);
+        }
+
+        Writer(Path path, long expectedEntries, LocalDateTime watermark, long window) throws IOException {
+            this.path = path;
+            this.window = window;
+            this.watermark = watermark;
+            this.slotCount = Long.highestOneBit(Math.max(1024, expectedEntries * 2) - 1) << 1;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long tableEnd = HEADER_SIZE + slotCount * 8;
+            this.table = map(channel, FileChannel.MapMode.READ_WRITE, tableEnd, window);
+            this.dataPosition = tableEnd;
+        }
+
+        /**
+         * @return false if the entry was skipped because it cannot be stored.
+         */
+        public boolean add(String shortUrl, String originalUrl, LocalDateTime expiresAt, RedirectPolicy policy) throws IOException {
+            byte[] url = originalUrl.getBytes(StandardCharsets.UTF_8);
+            int size = (RECORD_FIXED_SIZE + shortUrl.length() + url.length + 7) & ~7;
+            if (size > MAX_RECORD_SIZE || !shortUrl.chars().allMatch(c -> c <= 0x7F)) {
+                return false;
+            }
+            if (entryCount + 1 > slotCount * MAX_LOAD) {
+                throw new IllegalStateException("Redirect snapshot outgrew its " + slotCount + " slots");
+            }
+            if (buffer.remaining() < size) {
+                flush();
+            }
+            long record = dataPosition + buffer.position();
+            buffer.putLong(expiresAt == null ? NO_EXPIRY : encode(expiresAt));
+            buffer.putInt(url.length);
+            buffer.putInt((policy.isPermanent() ? Integer.MIN_VALUE : 0) | policy.getMaxAgeSeconds());
+            buffer.putShort((short) shortUrl.length());
+            for (int i = 0; i < shortUrl.length(); i++) {
+                buffer.put((byte) shortUrl.charAt(i));
+            }
+            buffer.put(url);
+            while ((buffer.position() & 7) != 0) {
+                buffer.put((byte) 0);
+            }
+
+            long hash = hash(shortUrl);
+            long slotMask = slotCount - 1;
+            long slot = hash & slotMask;
+            while (getSlot(slot) != 0) {
+                slot = (slot + 1) & slotMask;
+            }
+            putSlot(slot, (hash >>> 40) << 40 | record >>> 3);
+            entryCount++;
+            return true;
+        }
+
+        private long getSlot(long slot) {
+            long position = HEADER_SIZE + slot * 8;
+            return table[(int) (position / window)].getLong((int) (position % window));
+        }
+
+        private void putSlot(long slot, long value) {
+            long position = HEADER_SIZE + slot * 8;
+            table[(int) (position / window)].putLong((int) (position % window), value);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                dataPosition += channel.write(buffer, dataPosition);
+            }
+            buffer.clear();
+        }
+
+        public long getEntryCount() {
+            return entryCount;
+        }
+
+        /**
+         * Writes the header last, so a file cut short by a crash is never mistaken for a snapshot.
+         */
+        public void finish() throws IOException {
+            flush();
+            MappedByteBuffer header = table[0];
+            header.putLong(8, slotCount);
+            header.putLong(16, entryCount);
+            header.putLong(24, encode(watermark));
+            header.putInt(4, VERSION);
+            for (MappedByteBuffer window : table) {
+                window.force();
+            }
+            header.putInt(0, MAGIC);
+            header.force();
+            channel.force(true);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!finished) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
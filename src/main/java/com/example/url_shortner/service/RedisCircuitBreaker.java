@@ -0,0 +1,143 @@
+package com.example.url_shortner.service;
+
+import io.lettuce.core.RedisException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Guards Redis calls on the request path. After {@code redis.circuit.failure-threshold}
+ * consecutive failures or slow calls the circuit opens and calls go straight to their fallback
+ * for {@code redis.circuit.open-ms}; then a single probe call is let through, and its outcome
+ * closes the circuit or opens it again. Together with the Lettuce command timeout this bounds
+ * what a Redis brownout can add to a request.
+ */
+@Component
+public class RedisCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAtNanos;
+
+    private final Counter rejectedCalls;
+    private final Counter openings;
+
+    @Value("${redis.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    // A call that succeeds but takes longer than this counts as a failure
+    @Value("${redis.circuit.slow-call-ms:100}")
+    private long slowCallMillis;
+
+    @Value("${redis.circuit.open-ms:5000}")
+    private long openMillis;
+
+    public RedisCircuitBreaker(MeterRegistry registry) {
+        Gauge.builder("redis.circuit.state", state, s -> s.get().ordinal())
+                .description("Redis circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        rejectedCalls = Counter.builder("redis.circuit.rejected")
+                .description("Redis calls skipped because the circuit was open")
+                .register(registry);
+        openings = Counter.builder("redis.circuit.opened")
+                .description("Times the Redis circuit opened")
+                .register(registry);
+    }
+
+    /**
+     * Runs the call, or returns the fallback's result if the circuit is open or the call throws.
+     * Only connection errors and timeouts count as failures; any other exception means Redis
+     * answered and the caller could not use the reply, which says nothing about Redis's health.
+     */
+    public <T> T call(Supplier<T> action, Supplier<T> fallback) {
+        if (!allowRequest()) {
+            rejectedCalls.increment();
+            return fallback.get();
+        }
+        long start = System.nanoTime();
+        try {
+            T result = action.get();
+            onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (DataAccessException | RedisException e) {
+            onFailure(e);
+            return fallback.get();
+        } catch (RuntimeException e) {
+            // Still ends a half-open probe, which would otherwise never be released
+            onSuccess(System.nanoTime() - start);
+            log.warn("Redis call failed after Redis answered", e);
+            return fallback.get();
+        }
+    }
+
+    /**
+     * Runs the call unless the circuit is open.
+     * @return false if the call was skipped or failed.
+     */
+    public boolean run(Runnable action) {
+        return call(() -> {
+            action.run();
+            return true;
+        }, () -> false);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    private boolean allowRequest() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        // While open, let exactly one caller through as a probe once the open period is over
+        return current == State.OPEN
+                && System.nanoTime() - openedAtNanos >= TimeUnit.MILLISECONDS.toNanos(openMillis)
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    private void onSuccess(long durationNanos) {
+        if (durationNanos > TimeUnit.MILLISECONDS.toNanos(slowCallMillis)) {
+            onFailure(null);
+            return;
+        }
+        consecutiveFailures.set(0);
+        if (state.get() == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            log.info("Redis circuit closed");
+        }
+    }
+
+    private void onFailure(RuntimeException e) {
+        if (state.get() == State.HALF_OPEN) {
+            open(e);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold && state.get() == State.CLOSED) {
+            open(e);
+        }
+    }
+
+    private void open(RuntimeException e) {
+        openedAtNanos = System.nanoTime();
+        State previous = state.getAndSet(State.OPEN);
+        consecutiveFailures.set(0);
+        if (previous != State.OPEN) {
+            openings.increment();
+            log.warn("Redis circuit opened for {} ms after {}", openMillis, e == null ? "slow calls" : e.toString());
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.url_shortner.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The Redis tier of the redirect cache: short code to original URL, expiring together with the
+ * link or after {@code cache.redis.ttl-seconds}, whichever is sooner. Bulk operations are
+ * pipelined so a whole batch costs one round trip. Also holds the short per-code lock that
+ * lets one node at a time load a missing code from the database.
+ * Every call goes through {@link RedisCircuitBreaker}: when Redis is failing, reads report a
+ * miss, cache fills are skipped, and deletes are queued and replayed once it recovers so a
+ * deleted link cannot come back from a stale key.
+ * <p>
+ * Values are stored as {@code 0x01 (p|t) max-age "," expiry-epoch-seconds 0x01 url}, so nodes
+ * serving from Redis build the same headers and cap their in-process copy by the same expiry.
+ * Values written before the expiry was always included are the bare URL; their expiry is taken
+ * from the key's remaining TTL, which never outlives the link.
+ */
+@Component
+public class RedisUrlCache {
+
+    static final String LOAD_LOCK_PREFIX = "url-shortener:load-lock:";
+
+    // Token handed out when Redis is unavailable and the load goes ahead without a lock
+    private static final String NO_LOCK = "";
+
+    // No URL starts with a control character
+    private static final char POLICY_MARKER = '\u0001';
+
+    private static final Logger log = LoggerFactory.getLogger(RedisUrlCache.class);
+
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    /**
+     * A cached value with its remaining time to live.
+     * @param ttlMillis Milliseconds left, -1 if the key never expires, -2 if it is missing.
+     */
+    public record Entry(CachedUrl cachedUrl, long ttlMillis) {
+    }
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    // Codes deleted while Redis was unavailable, whose keys still have to be removed
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+
+    @Value("${cache.redis.max-pending-deletes:100000}")
+    private int maxPendingDeletes;
+
+    // 0 keeps links without an expiry in Redis indefinitely
+    @Value("${cache.redis.ttl-seconds:86400}")
+    private long maxTtlSeconds;
+
+    // Hot codes whose key has less than this left are rewritten from the database on refresh
+    @Value("${cache.redis.refresh-ahead-seconds:300}")
+    private long refreshAheadSeconds;
+
+    @Value("${cache.redis.load-lock-ms:2000}")
+    private long loadLockMillis;
+
+    @Value("${cache.redis.load-wait-poll-ms:20}")
+    private long loadWaitPollMillis;
+
+    public CachedUrl get(String shortUrl) {
+        return getWithTtl(shortUrl).cachedUrl();
+    }
+
+    /**
+     * Reads the value and its remaining TTL in one pipelined round trip.
+     */
+    public Entry getWithTtl(String shortUrl) {
+        List<Object> results = circuitBreaker.call(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] key = shortUrl.getBytes(StandardCharsets.UTF_8);
+            connection.stringCommands().get(key);
+            connection.keyCommands().pTtl(key);
+            return null;
+        }), () -> null);
+        if (results == null) {
+            return new Entry(null, -2);
+        }
+        // Decoded outside the circuit breaker: a bad value is this key's problem, not Redis's
+        try {
+            long ttl = results.get(1) == null ? -2 : (Long) results.get(1);
+            return new Entry(decode((String) results.get(0), ttl), ttl);
+        } catch (RuntimeException e) {
+            log.warn("Deleting unreadable cached value of {}", shortUrl, e);
+            delete(shortUrl);
+            return new Entry(null, -2);
+        }
+    }
+
+    public boolean isDueForRefresh(Entry entry) {
+        return entry.ttlMillis() >= 0 && entry.ttlMillis() < TimeUnit.SECONDS.toMillis(refreshAheadSeconds);
+    }
+
+    public void put(String shortUrl, CachedUrl cachedUrl) {
+        long ttlSeconds = ttlSeconds(LocalDateTime.now(), cachedUrl.expiresAt());
+        String value = encode(cachedUrl);
+        if (ttlSeconds > 0) {
+            circuitBreaker.run(() -> redisTemplate.opsForValue().set(shortUrl, value, ttlSeconds, TimeUnit.SECONDS));
+        } else if (ttlSeconds < 0) {
+            circuitBreaker.run(() -> redisTemplate.opsForValue().set(shortUrl, value));
+        }
+    }
+
+    /**
+     * Writes every entry in a single pipeline. Entries that have already expired are skipped.
+     */
+    public void putAll(Map<String, CachedUrl> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        circuitBreaker.run(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            entries.forEach((shortUrl, cachedUrl) -> {
+                long ttlSeconds = ttlSeconds(now, cachedUrl.expiresAt());
+                if (ttlSeconds == 0) {
+                    return;
+                }
+                connection.stringCommands().set(
+                        shortUrl.getBytes(StandardCharsets.UTF_8),
+                        encode(cachedUrl).getBytes(StandardCharsets.UTF_8),
+                        ttlSeconds > 0 ? Expiration.seconds(ttlSeconds) : Expiration.persistent(),
+                        RedisStringCommands.SetOption.upsert());
+            });
+            return null;
+        }));
+    }
+
+    private static String encode(CachedUrl cachedUrl) {
+        RedirectPolicy policy = cachedUrl.policy();
+        String expiresAt = cachedUrl.expiresAt() == null ? "" : Long.toString(cachedUrl.expiresAt().toEpochSecond(ZoneOffset.UTC));
+        return POLICY_MARKER + (policy.isPermanent() ? "p" : "t") + policy.getMaxAgeSeconds() + "," + expiresAt
+                + POLICY_MARKER + cachedUrl.originalUrl();
+    }
+
+    /**
+     * @param ttlMillis The key's remaining TTL, which bounds the expiry of values stored without one.
+     */
+    private static CachedUrl decode(String value, long ttlMillis) {
+        if (value == null) {
+            return null;
+        }
+        if (value.isEmpty() || value.charAt(0) != POLICY_MARKER) {
+            return new CachedUrl(value, ttlMillis >= 0 ? LocalDateTime.now().plus(Duration.ofMillis(ttlMillis)) : null);
+        }
+        int end = value.indexOf(POLICY_MARKER, 1);
+        String[] fields = value.substring(2, end).split(",", -1);
+        LocalDateTime expiresAt = fields[1].isEmpty() ? null : LocalDateTime.ofEpochSecond(Long.parseLong(fields[1]), 0, ZoneOffset.UTC);
+        return new CachedUrl(value.substring(end + 1), expiresAt, RedirectPolicy.of(value.charAt(1) == 'p', Integer.parseInt(fields[0])));
+    }
+
+    /**
+     * @return Seconds to keep the key, -1 for no expiry, or 0 if the link has already expired.
+     */
+    private long ttlSeconds(LocalDateTime now, LocalDateTime expiresAt) {
+        if (expiresAt == null) {
+            return maxTtlSeconds > 0 ? maxTtlSeconds : -1;
+        }
+        long untilExpiry = Math.max(0, Duration.between(now, expiresAt).getSeconds());
+        return maxTtlSeconds > 0 ? Math.min(untilExpiry, maxTtlSeconds) : untilExpiry;
+    }
+
+    public void delete(String shortUrl) {
+        if (!circuitBreaker.run(() -> redisTemplate.delete(shortUrl))) {
+            queueDeletes(List.of(shortUrl));
+        }
+    }
+
+    public void deleteAll(Collection<String> shortUrls) {
+        if (shortUrls.isEmpty()) {
+            return;
+        }
+        if (!circuitBreaker.run(() -> pipelineDelete(shortUrls))) {
+            queueDeletes(shortUrls);
+        }
+    }
+
+    private void pipelineDelete(Collection<String> shortUrls) {
+        byte[][] keys = shortUrls.stream().map(shortUrl -> shortUrl.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.keyCommands().del(keys);
+            return null;
+        });
+    }
+
+    private void queueDeletes(Collection<String> shortUrls) {
+        for (String shortUrl : shortUrls) {
+            if (pendingDeletes.size() >= maxPendingDeletes) {
+                // The key still expires by itself within cache.redis.ttl-seconds
+                log.warn("Dropping queued Redis deletes; {} are already waiting", pendingDeletes.size());
+                return;
+            }
+            pendingDeletes.add(shortUrl);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.redis.replay-interval-ms:1000}")
+    public void replayPendingDeletes() {
+        if (pendingDeletes.isEmpty() || circuitBreaker.getState() != RedisCircuitBreaker.State.CLOSED) {
+            return;
+        }
+        List<String> batch = new ArrayList<>(pendingDeletes);
+        if (circuitBreaker.run(() -> pipelineDelete(batch))) {
+            batch.forEach(pendingDeletes::remove);
+            log.info("Replayed {} Redis deletes queued while Redis was unavailable", batch.size());
+        }
+    }
+
+    public int getPendingDeletes() {
+        return pendingDeletes.size();
+    }
+
+    /**
+     * Tries to become the node that loads this code from the database.
+     * @return A token to pass to {@link #unlockLoad}, or null if another node holds the lock.
+     */
+    public String tryLockLoad(String shortUrl) {
+        String token = UUID.randomUUID().toString();
+        return circuitBreaker.call(() -> {
+            Boolean acquired = redisTemplate.opsForValue()
+                    .setIfAbsent(LOAD_LOCK_PREFIX + shortUrl, token, Duration.ofMillis(loadLockMillis));
+            return Boolean.TRUE.equals(acquired) ? token : null;
+        }, () -> NO_LOCK);
+    }
+
+    public void unlockLoad(String shortUrl, String token) {
+        if (!NO_LOCK.equals(token)) {
+            circuitBreaker.run(() -> redisTemplate.execute(UNLOCK_SCRIPT, List.of(LOAD_LOCK_PREFIX + shortUrl), token));
+        }
+    }
+
+    /**
+     * Waits for the node holding the load lock to populate the code.
+     * @return The entry, or null once the lock is released or has expired without one appearing.
+     */
+    public CachedUrl awaitLoad(String shortUrl) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(loadLockMillis);
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(loadWaitPollMillis));
+            CachedUrl cachedUrl = get(shortUrl);
+            if (cachedUrl != null) {
+                return cachedUrl;
+            }
+            if (!circuitBreaker.call(() -> Boolean.TRUE.equals(redisTemplate.hasKey(LOAD_LOCK_PREFIX + shortUrl)), () -> false)) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.url_shortner.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves every url_mappings row that is not on the shard {@link ShardRouter} now assigns it to,
+ * together with its click_stats rows. Run it once, on one node, after adding a shard to
+ * {@code shards.urls} everywhere: start that node with {@code shards.rebalance.enabled=true}.
+ * <p>
+ * Each batch is copied to its new shard before it is deleted from the old one, so a row is
+ * always on at least one shard; with {@code shards.lookup-fallback=true} redirects find it
+ * either way. Copies skip codes the target already has, so an interrupted run can simply be
+ * started again.
+ */
+@Component
+public class ShardRebalancer implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final String SCAN_SQL = "SELECT id, short_url, original_url, created_at, expires_at, click_count, user_id, "
+            + "permanent_redirect, cache_max_age_seconds, original_url_hash FROM url_mappings WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String INSERT_SQL = "INSERT INTO url_mappings (original_url, short_url, created_at, updated_at, expires_at, click_count, user_id, "
+            + "permanent_redirect, cache_max_age_seconds, original_url_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_STATS_SQL =
+            "INSERT INTO click_stats (url_mapping_id, granularity, bucket, clicks) VALUES (?, ?, ?, ?)";
+
+    private record Row(long id, String shortUrl, String originalUrl, Timestamp createdAt, Timestamp expiresAt,
+                       long clickCount, Long userId, Boolean permanentRedirect, Integer cacheMaxAgeSeconds, Long originalUrlHash) {
+    }
+
+    private record Stat(int granularity, int bucket, long clicks) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${shards.rebalance.enabled:false}")
+    private boolean enabled;
+
+    @Value("${shards.rebalance.batch-size:500}")
+    private int batchSize;
+
+    @Override
+    public void run(String... args) {
+        if (enabled && shardRouter.shardCount() > 1) {
+            rebalance();
+        }
+    }
+
+    /**
+     * @return The number of rows moved.
+     */
+    public long rebalance() {
+        long start = System.currentTimeMillis();
+        long moved = 0;
+        for (int source = 0; source < shardRouter.shardCount(); source++) {
+            long scanned = 0;
+            long afterId = 0;
+            while (true) {
+                long cursor = afterId;
+                List<Row> rows = shardRouter.onShard(source, () -> scan(cursor));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                scanned += rows.size();
+                afterId = rows.get(rows.size() - 1).id();
+
+                int from = source;
+                List<Row> misplaced = rows.stream().filter(row -> shardRouter.shardFor(row.shortUrl()) != from).toList();
+                for (Map.Entry<Integer, List<Row>> target : shardRouter.partition(misplaced, Row::shortUrl).entrySet()) {
+                    move(source, target.getKey(), target.getValue());
+                    moved += target.getValue().size();
+                }
+            }
+            log.info("Rebalanced shard {}: scanned {} rows, {} moved so far", source, scanned, moved);
+        }
+        log.info("Shard rebalance moved {} links in {} ms", moved, System.currentTimeMillis() - start);
+        return moved;
+    }
+
+    private List<Row> scan(long afterId) {
+        return jdbcTemplate.query(SCAN_SQL, (rs, rowNum) -> new Row(rs.getLong(1), rs.getString(2), rs.getString(3),
+                rs.getTimestamp(4), rs.getTimestamp(5), rs.getLong(6), rs.getObject(7, Long.class),
+                rs.getObject(8, Boolean.class), rs.getObject(9, Integer.class), rs.getObject(10, Long.class)), afterId, batchSize);
+    }
+
+    private void move(int source, int target, List<Row> rows) {
+        String idPlaceholders = String.join(",", Collections.nCopies(rows.size(), "?"));
+        Object[] ids = rows.stream().map(Row::id).toArray();
+        Map<Long, List<Stat>> stats = new HashMap<>();
+        shardRouter.onShard(source, () -> jdbcTemplate.query(
+                "SELECT url_mapping_id, granularity, bucket, clicks FROM click_stats WHERE url_mapping_id IN (" + idPlaceholders + ")",
+                rs -> {
+                    stats.computeIfAbsent(rs.getLong(1), k -> new ArrayList<>()).add(new Stat(rs.getInt(2), rs.getInt(3), rs.getLong(4)));
+                }, ids));
+
+        // The row and its stats arrive together, so a code already on the target is complete there
+        shardRouter.onShard(target, () -> transactionTemplate.executeWithoutResult(status -> copy(rows, stats)));
+
+        shardRouter.onShard(source, () -> transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update("DELETE FROM url_mappings WHERE id IN (" + idPlaceholders + ")", ids)));
+    }
+
+    private void copy(List<Row> rows, Map<Long, List<Stat>> stats) {
+        String codePlaceholders = String.join(",", Collections.nCopies(rows.size(), "?"));
+        Object[] codes = rows.stream().map(Row::shortUrl).toArray();
+        Set<String> present = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT short_url FROM url_mappings WHERE short_url IN (" + codePlaceholders + ")", String.class, codes));
+        List<Row> missing = rows.stream().filter(row -> !present.contains(row.shortUrl())).toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        // The row gets a new id, which dashboards pick up as a change
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, missing.stream()
+                .map(row -> new Object[]{row.originalUrl(), row.shortUrl(), row.createdAt(), now, row.expiresAt(), row.clickCount(),
+                        row.userId(), row.permanentRedirect(), row.cacheMaxAgeSeconds(), row.originalUrlHash()})
+                .toList());
+
+        // The target assigns new ids, which the stats rows have to follow
+        Map<String, Long> newIds = new HashMap<>();
+        jdbcTemplate.query("SELECT id, short_url FROM url_mappings WHERE short_url IN (" + codePlaceholders + ")",
+                rs -> {
+                    newIds.put(rs.getString(2), rs.getLong(1));
+                }, codes);
+        List<Object[]> statRows = new ArrayList<>();
+        for (Row row : missing) {
+            for (Stat stat : stats.getOrDefault(row.id(), List.of())) {
+                statRows.add(new Object[]{newIds.get(row.shortUrl()), stat.granularity(), stat.bucket(), stat.clicks()});
+            }
+        }
+        if (!statRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_STATS_SQL, statRows);
+        }
+    }
+}
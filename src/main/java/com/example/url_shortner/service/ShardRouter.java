@@ -0,0 +1,204 @@
+package com.example.url_shortner.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Places every url_mappings row on one of {@code shards.urls.size() + 1} databases, chosen by
+ * rendezvous hashing of the short code, so any node can find a code's shard without a lookup
+ * table and adding a shard only moves the codes that now score highest on it. Shard 0 is the
+ * main datasource, which also holds users, roles and the code sequence.
+ * <p>
+ * Queries are pointed at a shard by running them inside {@link #onShard}; the routing
+ * datasource reads the current shard when a connection is opened. A transaction must
+ * therefore start inside onShard and never span two shards. With sharding disabled there is a
+ * single shard and all of this is a pass-through.
+ */
+@Component
+public class ShardRouter {
+
+    private static final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+    // Fan-out gets its own virtual threads, so dashboard reads never queue behind exports,
+    // sweeps or rebuilds on the shared task executor; the shard pools bound the real concurrency
+    private final ExecutorService fanOutExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("shard-fanout-", 0).factory());
+
+    @Value("${shards.fan-out-timeout-ms:10000}")
+    private long fanOutTimeoutMs = 10000;
+
+    @Value("${shards.enabled:false}")
+    private boolean enabled;
+
+    // Additional shards, in a fixed order: shard i + 1 is the i-th URL. New shards go at the end.
+    @Value("${shards.urls:}")
+    private List<String> shardUrls;
+
+    // While rows are being moved, a lookup that misses the code's shard also checks the others
+    @Value("${shards.lookup-fallback:false}")
+    private boolean lookupFallback;
+
+    /**
+     * The shard the calling thread's queries go to; 0 outside {@link #onShard}.
+     */
+    public static int currentShard() {
+        Integer shard = currentShard.get();
+        return shard == null ? 0 : shard;
+    }
+
+    public int shardCount() {
+        return enabled ? shardUrls.size() + 1 : 1;
+    }
+
+    public boolean isLookupFallback() {
+        return lookupFallback && shardCount() > 1;
+    }
+
+    public int shardFor(String shortUrl) {
+        return shardFor(shortUrl, shardCount());
+    }
+
+    /**
+     * The shard with the highest score for this code among the first {@code shardCount} shards.
+     */
+    static int shardFor(String shortUrl, int shardCount) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        long codeHash = fnv1a(shortUrl);
+        int best = 0;
+        long bestScore = Long.MIN_VALUE;
+        for (int shard = 0; shard < shardCount; shard++) {
+            long score = mix(codeHash ^ mix(shard + 1));
+            if (score > bestScore) {
+                bestScore = score;
+                best = shard;
+            }
+        }
+        return best;
+    }
+
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // SplitMix64 finaliser
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> call) {
+        Integer previous = currentShard.get();
+        currentShard.set(shard);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                currentShard.remove();
+            } else {
+                currentShard.set(previous);
+            }
+        }
+    }
+
+    public void onShard(int shard, Runnable call) {
+        onShard(shard, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public <T> T onShardFor(String shortUrl, Supplier<T> call) {
+        return onShard(shardFor(shortUrl), call);
+    }
+
+    /**
+     * Splits items by the shard of their code, keeping their relative order within each shard.
+     */
+    public <E> Map<Integer, List<E>> partition(Collection<E> items, Function<E, String> shortUrl) {
+        Map<Integer, List<E>> byShard = new HashMap<>();
+        for (E item : items) {
+            byShard.computeIfAbsent(shardFor(shortUrl.apply(item)), k -> new ArrayList<>()).add(item);
+        }
+        return byShard;
+    }
+
+    public <V> Map<Integer, Map<String, V>> partition(Map<String, V> entries) {
+        Map<Integer, Map<String, V>> byShard = new HashMap<>();
+        entries.forEach((shortUrl, value) ->
+                byShard.computeIfAbsent(shardFor(shortUrl), k -> new HashMap<>()).put(shortUrl, value));
+        return byShard;
+    }
+
+    /**
+     * Runs the call on every shard, in parallel when there is more than one: shard 0 on the
+     * calling thread, the others on fan-out threads. Must not be called inside a transaction,
+     * which would pin shard 0's call to the transaction's connection.
+     * @return The results in shard order.
+     * @throws QueryTimeoutException If a shard has not answered within shards.fan-out-timeout-ms.
+     */
+    public <T> List<T> onEveryShard(IntFunction<T> call) {
+        int shards = shardCount();
+        if (shards == 1) {
+            return List.of(onShard(0, () -> call.apply(0)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fanOutTimeoutMs);
+        List<Future<T>> futures = new ArrayList<>(shards - 1);
+        for (int shard = 1; shard < shards; shard++) {
+            int target = shard;
+            futures.add(fanOutExecutor.submit(() -> onShard(target, () -> call.apply(target))));
+        }
+        List<T> results = new ArrayList<>(shards);
+        int shard = 0;
+        try {
+            results.add(onShard(0, () -> call.apply(0)));
+            for (Future<T> future : futures) {
+                shard++;
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Shard " + shard + " did not answer within " + fanOutTimeoutMs + " ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shard " + shard, e);
+        } finally {
+            // Nothing is waiting for the rest once one shard has failed
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdownNow();
+    }
+}
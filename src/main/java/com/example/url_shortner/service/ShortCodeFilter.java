@@ -0,0 +1,224 @@
+package com.example.url_shortner.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Membership filter over every short code in url_mappings. A negative answer means the code
+ * definitely does not exist, so unknown codes can be rejected and free aliases confirmed
+ * without touching Redis or the database.
+ * <p>
+ * The filter is rebuilt from the table at startup and on a schedule, which also clears out
+ * codes that have since been deleted. New codes are added locally and broadcast to the other
+ * nodes over Redis pub/sub; codes whose broadcast fails are kept and sent again once Redis
+ * is back, since another node would otherwise reject them until its next rebuild. Pub/sub
+ * drops whatever is published while a subscriber is disconnected, so every (re)subscription to
+ * the channel also triggers a rebuild unless one has started since. Until the first build
+ * completes every code is reported as possibly present. While codes may be going missing (Redis
+ * unreachable, or a resubscription whose rebuild hasn't finished) {@link #mayBeMissingCodes} tells
+ * callers not to trust a negative answer.
+ */
+@Component
+public class ShortCodeFilter {
+
+    public static final String ADD_CHANNEL = "url-shortener:bloom-add";
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeFilter.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    // Codes added on this node whose broadcast has not reached Redis yet
+    private final Set<String> pendingBroadcasts = ConcurrentHashMap.newKeySet();
+
+    @Value("${bloom.max-pending-broadcasts:100000}")
+    private int maxPendingBroadcasts;
+
+    @Value("${bloom.expected-insertions:10000000}")
+    private long expectedInsertions;
+
+    @Value("${bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${bloom.max-memory-bytes:67108864}")
+    private long maxMemoryBytes;
+
+    @Value("${bloom.subscribe-grace-ms:30000}")
+    private long subscribeGraceMillis;
+
+    private volatile BloomFilter active;
+    private volatile BloomFilter building;
+
+    // System.nanoTime() of the latest subscription to ADD_CHANNEL, and of the start of the latest successful build
+    private volatile long subscribedAt;
+    private volatile long builtFrom;
+    // System.nanoTime() until which a resubscription with no rebuild since leaves the filter suspect
+    private volatile long graceEnd = System.nanoTime();
+
+    public boolean mightContain(String shortUrl) {
+        BloomFilter filter = active;
+        return filter == null || filter.mightContain(shortUrl);
+    }
+
+    /**
+     * Whether codes the filter reports as absent may nonetheless have been created on another
+     * node: broadcasts can't arrive while Redis is unreachable, and those published while the
+     * subscription was down are only picked up by the rebuild that follows. Bounded by
+     * {@code bloom.subscribe-grace-ms} so a failing rebuild doesn't send every miss to the database.
+     */
+    public boolean mayBeMissingCodes() {
+        if (circuitBreaker.getState() != RedisCircuitBreaker.State.CLOSED) {
+            return true;
+        }
+        return builtFrom - subscribedAt < 0 && System.nanoTime() - graceEnd < 0;
+    }
+
+    /**
+     * Records a newly created code on this node and on every other node.
+     */
+    public void add(String shortUrl) {
+        addLocal(shortUrl);
+        broadcast(List.of(shortUrl));
+    }
+
+    /**
+     * Records a batch of new codes, broadcasting them as a single newline-separated message.
+     */
+    public void addAll(Collection<String> shortUrls) {
+        if (shortUrls.isEmpty()) {
+            return;
+        }
+        shortUrls.forEach(this::addLocal);
+        broadcast(shortUrls);
+    }
+
+    private void broadcast(Collection<String> shortUrls) {
+        if (circuitBreaker.run(() -> redisTemplate.convertAndSend(ADD_CHANNEL, String.join("\n", shortUrls)))) {
+            return;
+        }
+        for (String shortUrl : shortUrls) {
+            if (pendingBroadcasts.size() >= maxPendingBroadcasts) {
+                // Other nodes pick these up at their next rebuild
+                log.warn("Dropping queued bloom filter broadcasts; {} are already waiting", pendingBroadcasts.size());
+                return;
+            }
+            pendingBroadcasts.add(shortUrl);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bloom.rebroadcast-interval-ms:1000}")
+    public void rebroadcastPending() {
+        if (pendingBroadcasts.isEmpty() || circuitBreaker.getState() != RedisCircuitBreaker.State.CLOSED) {
+            return;
+        }
+        List<String> batch = new ArrayList<>(pendingBroadcasts);
+        if (circuitBreaker.run(() -> redisTemplate.convertAndSend(ADD_CHANNEL, String.join("\n", batch)))) {
+            batch.forEach(pendingBroadcasts::remove);
+            log.info("Rebroadcast {} short codes added while Redis was unavailable", batch.size());
+        }
+    }
+
+    /**
+     * Handles a broadcast from another node, which may carry several codes.
+     */
+    public void addFromMessage(String payload) {
+        for (String shortUrl : payload.split("\n")) {
+            addLocal(shortUrl);
+        }
+    }
+
+    /**
+     * Called whenever the subscription to {@link #ADD_CHANNEL} is (re)established. Codes
+     * broadcast while it was down were lost, so a filter built before this point may be missing
+     * some; the rebuild runs in the background, off the subscriber's connection thread.
+     */
+    public void onSubscribed() {
+        subscribedAt = System.nanoTime();
+        graceEnd = subscribedAt + subscribeGraceMillis * 1_000_000;
+        taskExecutor.execute(this::rebuildIfStale);
+    }
+
+    private synchronized void rebuildIfStale() {
+        // A build that started after the subscription saw every code the channel could have missed
+        if (active == null || builtFrom - subscribedAt < 0) {
+            rebuild();
+        }
+    }
+
+    public void addLocal(String shortUrl) {
+        BloomFilter filter = active;
+        if (filter != null) {
+            filter.put(shortUrl);
+        }
+        BloomFilter inProgress = building;
+        if (inProgress != null) {
+            inProgress.put(shortUrl);
+        }
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${bloom.rebuild-interval-ms:900000}")
+    public synchronized void rebuild() {
+        try {
+            long startNanos = System.nanoTime();
+            long start = System.currentTimeMillis();
+            long rows = 0;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                Long shardRows = shardRouter.onShard(shard, () -> jdbcTemplate.queryForObject("SELECT count(*) FROM url_mappings", Long.class));
+                rows += shardRows == null ? 0 : shardRows;
+            }
+            long expected = Math.max(expectedInsertions, rows * 2);
+            BloomFilter filter = BloomFilter.create(expected, falsePositiveRate, maxMemoryBytes);
+            building = filter;
+
+            // Stream the codes with a cursor instead of materialising the whole column
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(10_000);
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                shardRouter.onShard(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                        streaming.query("SELECT short_url FROM url_mappings", rs -> {
+                            filter.put(rs.getString(1));
+                        })));
+            }
+
+            active = filter;
+            builtFrom = startNanos;
+            log.info("Rebuilt short code filter with {} codes ({} KiB, {} hashes) in {} ms",
+                    rows, filter.getBitCount() / 8 / 1024, filter.getHashCount(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Short code filter rebuild failed, keeping the previous filter", e);
+        } finally {
+            building = null;
+        }
+    }
+}
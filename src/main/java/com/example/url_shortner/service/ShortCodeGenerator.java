@@ -0,0 +1,235 @@
+package com.example.url_shortner.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates short codes from numeric IDs instead of guessing random strings.
+ * Each node leases a block of IDs at a time, either from a database sequence or from a Redis
+ * INCRBY counter, so codes are unique across nodes without an existence query per code.
+ * IDs are optionally run through a keyed permutation before base62 encoding so that
+ * consecutive codes don't look sequential.
+ * <p>
+ * If the Redis counter is lost (a flush, or a failover to a replica that hadn't seen it), it is
+ * seeded from the highest ID among the codes already in url_mappings before the next lease, so
+ * it doesn't start handing out used codes again.
+ * <p>
+ * The permutation only hides the order of codes from someone who doesn't know the key. The
+ * default {@code shortcode.permutation-key} is in this repository, so production deployments
+ * must set their own.
+ */
+@Component
+public class ShortCodeGenerator {
+
+    static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    static final String SEQUENCE_NAME = "short_code_seq";
+    static final String REDIS_COUNTER_KEY = "url-shortener:short-code-seq";
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeGenerator.class);
+
+    // Number of codes of the default length: 62^7
+    private static final long CODE_SPACE = 3_521_614_606_208L;
+    private static final int CODE_LENGTH = 7;
+    private static final int HALF_BITS = 21;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    // "sequence" leases from a database sequence, "redis" from an INCRBY counter
+    @Value("${shortcode.id-source:sequence}")
+    private String idSource;
+
+    @Value("${shortcode.block-size:1000}")
+    private int blockSize;
+
+    @Value("${shortcode.permute:true}")
+    private boolean permute;
+
+    // Public default; override it in production or the codes can be unpermuted into their IDs
+    @Value("${shortcode.permutation-key:6364136223846793005}")
+    private long permutationKey;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long nextId;
+    private long blockEnd;
+
+    @PostConstruct
+    public void init() {
+        if ("sequence".equals(idSource)) {
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE_NAME + " START WITH 1 INCREMENT BY " + blockSize);
+            jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE_NAME + " INCREMENT BY " + blockSize);
+        }
+    }
+
+    public String nextCode() {
+        return encode(nextId());
+    }
+
+    long nextId() {
+        lock.lock();
+        try {
+            if (nextId >= blockEnd) {
+                leaseBlock();
+            }
+            return nextId++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void leaseBlock() {
+        if ("redis".equals(idSource)) {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(REDIS_COUNTER_KEY))) {
+                seedRedisCounter();
+            }
+            Long end = redisTemplate.opsForValue().increment(REDIS_COUNTER_KEY, blockSize);
+            if (end == null) {
+                throw new IllegalStateException("Could not lease a short code block from Redis");
+            }
+            blockEnd = end + 1;
+            nextId = blockEnd - blockSize;
+        } else {
+            Long start = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE_NAME + "')", Long.class);
+            if (start == null) {
+                throw new IllegalStateException("Could not lease a short code block from " + SEQUENCE_NAME);
+            }
+            nextId = start;
+            blockEnd = start + blockSize;
+        }
+    }
+
+    private void seedRedisCounter() {
+        long highest = highestIssuedId();
+        // Another node may have seeded it in the meantime, from the same table
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(REDIS_COUNTER_KEY, Long.toString(highest)))) {
+            log.warn("Short code counter was missing from Redis; seeded it at {}", highest);
+        }
+    }
+
+    /**
+     * The highest ID behind a 7-character code in url_mappings, or 0 if there is none. Longer
+     * codes come from IDs past the code space, which the counter doesn't reach in practice. A
+     * custom alias that looks like a code can only push the counter forward, which is harmless.
+     */
+    long highestIssuedId() {
+        AtomicLong highest = new AtomicLong();
+        // Stream the codes with a cursor instead of materialising the whole column
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(10_000);
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.onShard(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                    streaming.query("SELECT short_url FROM url_mappings WHERE length(short_url) = " + CODE_LENGTH, rs -> {
+                        String code = rs.getString(1);
+                        if (hasGeneratedForm(code)) {
+                            highest.accumulateAndGet(decode(code), Math::max);
+                        }
+                    })));
+        }
+        return highest.get();
+    }
+
+    /**
+     * Whether the code has the shape {@link #encode} produces: 7 to 11 base62 characters.
+     */
+    static boolean hasGeneratedForm(String code) {
+        if (code.length() < CODE_LENGTH || code.length() > 11) {
+            return false;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            if (ALPHABET.indexOf(code.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String encode(long id) {
+        long value = permute && id < CODE_SPACE ? permute(id) : id;
+        char[] buffer = new char[11];
+        int pos = buffer.length;
+        do {
+            buffer[--pos] = ALPHABET.charAt((int) (value % 62));
+            value /= 62;
+        } while (value > 0);
+        while (buffer.length - pos < CODE_LENGTH) {
+            buffer[--pos] = '0';
+        }
+        return new String(buffer, pos, buffer.length - pos);
+    }
+
+    /**
+     * The ID {@link #encode} turned into this code.
+     */
+    long decode(String code) {
+        long value = 0;
+        for (int i = 0; i < code.length(); i++) {
+            value = value * 62 + ALPHABET.indexOf(code.charAt(i));
+        }
+        return permute && value < CODE_SPACE ? unpermute(value) : value;
+    }
+
+    /**
+     * Bijection on [0, 62^7): a 4-round Feistel network over 42 bits, cycle-walked until the
+     * result falls back inside the code space.
+     */
+    long permute(long id) {
+        long value = id;
+        do {
+            value = feistel(value, false);
+        } while (value >= CODE_SPACE);
+        return value;
+    }
+
+    long unpermute(long code) {
+        long value = code;
+        do {
+            value = feistel(value, true);
+        } while (value >= CODE_SPACE);
+        return value;
+    }
+
+    private long feistel(long value, boolean inverse) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (int i = 0; i < ROUNDS; i++) {
+            int round = inverse ? ROUNDS - 1 - i : i;
+            if (inverse) {
+                long previousRight = left;
+                left = right ^ roundFunction(previousRight, round);
+                right = previousRight;
+            } else {
+                long previousLeft = left;
+                left = right;
+                right = previousLeft ^ roundFunction(right, round);
+            }
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private long roundFunction(long half, int round) {
+        long h = (half + permutationKey * (round + 1)) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        return h & HALF_MASK;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.url_shortner.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the redirect and link-management paths. Every meter is registered once up front,
+ * so recording is a nanoTime difference plus an array lookup, with no tag resolution or map
+ * lookups on the request path.
+ */
+@Component
+public class UrlMetrics {
+
+    public enum RedirectOutcome {
+        LOCAL_HIT, SNAPSHOT_HIT, CACHE_HIT, DB_HIT, EXPIRED, NOT_FOUND, FILTERED
+    }
+
+    private final Timer[] redirectTimers;
+    private final Timer redisTimer;
+    private final Timer repositoryTimer;
+    private final Timer shortenTimer;
+    private final Timer batchShortenTimer;
+    private final Timer deleteTimer;
+    private final Counter shortenedLinks;
+    private final Counter batchShortenedLinks;
+    private final Counter codeRetries;
+    private final Counter deduplicatedLinks;
+
+    public UrlMetrics(MeterRegistry registry) {
+        RedirectOutcome[] outcomes = RedirectOutcome.values();
+        redirectTimers = new Timer[outcomes.length];
+        for (RedirectOutcome outcome : outcomes) {
+            redirectTimers[outcome.ordinal()] = Timer.builder("url.redirect")
+                    .description("Short code resolution, by where the answer came from")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        redisTimer = Timer.builder("url.redirect.redis")
+                .description("Redis lookups on the redirect path")
+                .publishPercentileHistogram()
+                .register(registry);
+        repositoryTimer = Timer.builder("url.redirect.repository")
+                .description("Database lookups on the redirect path")
+                .publishPercentileHistogram()
+                .register(registry);
+        shortenTimer = Timer.builder("url.shorten").tag("mode", "single").register(registry);
+        batchShortenTimer = Timer.builder("url.shorten").tag("mode", "batch").register(registry);
+        deleteTimer = Timer.builder("url.delete").register(registry);
+        shortenedLinks = Counter.builder("url.shortened").tag("mode", "single").register(registry);
+        batchShortenedLinks = Counter.builder("url.shortened").tag("mode", "batch").register(registry);
+        codeRetries = Counter.builder("url.shortcode.retries")
+                .description("Inserts retried because a generated code collided with a custom alias")
+                .register(registry);
+        deduplicatedLinks = Counter.builder("url.shortened.deduplicated")
+                .description("Shorten requests answered with the user's existing link for the same URL")
+                .register(registry);
+    }
+
+    public void recordRedirect(RedirectOutcome outcome, long startNanos) {
+        redirectTimers[outcome.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRedis(long startNanos) {
+        redisTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRepository(long startNanos) {
+        repositoryTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordShorten(long startNanos) {
+        shortenTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        shortenedLinks.increment();
+    }
+
+    public void recordBatchShorten(long startNanos, int created) {
+        batchShortenTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        batchShortenedLinks.increment(created);
+    }
+
+    public void recordDelete(long startNanos) {
+        deleteTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCodeRetry() {
+        codeRetries.increment();
+    }
+
+    public void recordDeduplicated(int links) {
+        deduplicatedLinks.increment(links);
+    }
+}
@@ -1,28 +1,76 @@
 package com.example.url_shortner.service;
 
+import com.example.url_shortner.config.ReplicaRoutingDataSource;
 import com.example.url_shortner.dto.ShortenRequest;
+import com.example.url_shortner.dto.UrlChanges;
+import com.example.url_shortner.dto.UrlPage;
 import com.example.url_shortner.dto.UrlResponse;
+import com.example.url_shortner.dto.UrlSummary;
 import com.example.url_shortner.entity.UrlMapping;
 import com.example.url_shortner.entity.User;
 import com.example.url_shortner.repository.UrlMappingRepository;
+import com.example.url_shortner.repository.UrlTombstoneRepository;
 import com.example.url_shortner.repository.UserRepository;
-import org.apache.commons.lang3.RandomStringUtils;
+import com.example.url_shortner.service.UrlMetrics.RedirectOutcome;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeParseException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
 public class UrlService {
 
+    private static final String EXPORT_SQL = "SELECT id, original_url, short_url, created_at, expires_at, click_count, "
+            + "permanent_redirect, cache_max_age_seconds FROM url_mappings WHERE user_id = ? ORDER BY created_at DESC, id DESC";
+
+    // A generated code only clashes with an existing custom alias, so a few attempts are plenty
+    private static final int MAX_CODE_ATTEMPTS = 5;
+
+    // The listing order, used to merge the per-shard results
+    private static final Comparator<UrlSummary> NEWEST_FIRST =
+            Comparator.comparing(UrlSummary::getCreatedAt).thenComparing(UrlSummary::getId).reversed();
+
+    private static final Logger log = LoggerFactory.getLogger(UrlService.class);
+
+    /**
+     * A redirect lookup that missed the in-process cache, and where it was answered from.
+     */
+    private record Resolution(CachedUrl cachedUrl, RedirectOutcome outcome) {
+    }
+
+    private final SingleFlight<String, Resolution> inFlightLoads = new SingleFlight<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
     @Autowired
     private UrlMappingRepository urlMappingRepository;
 
@@ -30,156 +78,691 @@ public class UrlService {
     private UserRepository userRepository;
 
     @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private UrlTombstoneRepository urlTombstoneRepository;
+
+    @Autowired
+    private RedisUrlCache redisUrlCache;
+
+    @Autowired
+    private ClickCountAggregator clickCountAggregator;
+
+    @Autowired
+    private ClickJournal clickJournal;
+
+    @Autowired
+    private ClickStatsService clickStatsService;
+
+    @Autowired
+    private LocalUrlCache localUrlCache;
+
+    @Autowired
+    private ShortCodeGenerator shortCodeGenerator;
+
+    @Autowired
+    private ShortCodeFilter shortCodeFilter;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private EdgeRedirectIndex edgeRedirectIndex;
+
+    @Autowired
+    private UrlMetrics urlMetrics;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    @Value("${urls.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${urls.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${urls.export.fetch-size:1000}")
+    private int exportFetchSize;
+
+    // Browsers and CDNs cannot be told to drop a cached redirect, so keep this modest
+    @Value("${redirect.cache.max-age-limit-seconds:86400}")
+    private int maxCacheMaxAgeSeconds;
+
+    // Reaches back past the cursor for rows whose transaction committed late
+    @Value("${urls.sync.overlap-ms:10000}")
+    private long syncOverlapMs;
+
+    // Older cursors may have missed deletes whose tombstones are gone
+    @Value("${edge.snapshot.tombstone-retention-hours:72}")
+    private long tombstoneRetentionHours;
+
+    @Value("${datasource.replicas.enabled:false}")
+    private boolean replicasEnabled;
+
+    // Answer a repeated shorten of the same URL with the user's existing link instead of a new one
+    @Value("${urls.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    // How long a reused link must still live when the request gives no expiration date
+    @Value("${urls.dedup.min-remaining-minutes:60}")
+    private long dedupMinRemainingMinutes;
 
     public UrlResponse shortenUrl(ShortenRequest shortenRequest, User user, String baseUrl) {
+        long start = System.nanoTime();
         String originalUrl = shortenRequest.getOriginalUrl();
         String shortUrl;
+        boolean generatedCode;
         
-        // Handle custom alias
-        if (shortenRequest.getCustomAlias() != null && !shortenRequest.getCustomAlias().trim().isEmpty()) {
-            String customAlias = shortenRequest.getCustomAlias().trim();
-            
-            // Validate alias format (alphanumeric, 3-20 characters)
-            if (!customAlias.matches("^[a-zA-Z0-9]{3,20}$")) {
-                throw new RuntimeException("Custom alias must be 3-20 characters long and contain only letters and numbers");
+        if (originalUrl == null || originalUrl.trim().isEmpty()) {
+            throw new RuntimeException("Original URL is required");
+        }
+        String customAlias = validateCustomAlias(shortenRequest.getCustomAlias());
+        LocalDateTime expiresAt = resolveExpiresAt(shortenRequest);
+        RedirectPolicy policy = resolveRedirectPolicy(shortenRequest.getPermanentRedirect(), shortenRequest.getCacheMaxAgeSeconds());
+        String normalizedUrl = OriginalUrlHash.normalize(originalUrl);
+        long originalUrlHash = OriginalUrlHash.of(normalizedUrl);
+
+        // An alias asks for that exact code, so only generated codes are reused
+        if (dedupEnabled && customAlias == null) {
+            UrlSummary existing = findReusable(findDedupCandidates(user, List.of(originalUrlHash)),
+                    normalizedUrl, policy, minimumReuseExpiry(shortenRequest, expiresAt, LocalDateTime.now()));
+            if (existing != null) {
+                urlMetrics.recordDeduplicated(1);
+                return new UrlResponse(existing, baseUrl);
             }
-            
-            // Check if alias is already taken
-            if (urlMappingRepository.existsByShortUrl(customAlias)) {
+        }
+
+        // Handle custom alias
+        if (customAlias != null) {
+            // Check if alias is already taken; the filter rules out most free aliases without a query
+            if (shortCodeFilter.mightContain(customAlias)
+                    && shardRouter.onShardFor(customAlias, () -> urlMappingRepository.existsByShortUrl(customAlias))) {
                 throw new RuntimeException("Custom alias is already taken");
             }
             
             shortUrl = customAlias;
+            generatedCode = false;
         } else {
-            shortUrl = generateShortUrl();
+            shortUrl = shortCodeGenerator.nextCode();
+            generatedCode = true;
         }
 
         UrlMapping urlMapping = new UrlMapping();
         urlMapping.setOriginalUrl(originalUrl);
+        urlMapping.setOriginalUrlHash(originalUrlHash);
         urlMapping.setShortUrl(shortUrl);
         urlMapping.setUser(user);
         urlMapping.setCreatedAt(LocalDateTime.now());
-        
-        // Handle expiration date
+        urlMapping.setUpdatedAt(urlMapping.getCreatedAt());
+        urlMapping.setExpiresAt(expiresAt);
+        urlMapping.setPermanentRedirect(policy.isPermanent());
+        urlMapping.setCacheMaxAgeSeconds(policy.getMaxAgeSeconds());
+
+        UrlMapping savedMapping = saveMapping(urlMapping, generatedCode);
+        shortUrl = savedMapping.getShortUrl();
+        shortCodeFilter.add(shortUrl);
+
+        redisUrlCache.put(shortUrl, toCachedUrl(savedMapping));
+
+        urlMetrics.recordShorten(start);
+        return new UrlResponse(savedMapping, baseUrl);
+    }
+
+    /**
+     * Trims and validates an optional custom alias.
+     * @return The alias, or null if none was requested.
+     */
+    String validateCustomAlias(String requestedAlias) {
+        if (requestedAlias == null || requestedAlias.trim().isEmpty()) {
+            return null;
+        }
+        String customAlias = requestedAlias.trim();
+
+        // Validate alias format (alphanumeric, 3-20 characters)
+        if (!customAlias.matches("^[a-zA-Z0-9]{3,20}$")) {
+            throw new RuntimeException("Custom alias must be 3-20 characters long and contain only letters and numbers");
+        }
+        return customAlias;
+    }
+
+    /**
+     * Validates a requested redirect policy; both parts default to an uncacheable 302.
+     */
+    RedirectPolicy resolveRedirectPolicy(Boolean permanentRedirect, Integer cacheMaxAgeSeconds) {
+        if (cacheMaxAgeSeconds != null && (cacheMaxAgeSeconds < 0 || cacheMaxAgeSeconds > maxCacheMaxAgeSeconds)) {
+            throw new RuntimeException("Cache max-age must be between 0 and " + maxCacheMaxAgeSeconds + " seconds");
+        }
+        return RedirectPolicy.of(permanentRedirect, cacheMaxAgeSeconds);
+    }
+
+    boolean isDedupEnabled() {
+        return dedupEnabled;
+    }
+
+    /**
+     * The user's live links whose URL hash is one of the given ones, from every shard.
+     */
+    List<UrlSummary> findDedupCandidates(User user, Collection<Long> originalUrlHashes) {
+        LocalDateTime now = LocalDateTime.now();
+        List<UrlSummary> candidates = new ArrayList<>();
+        shardRouter.onEveryShard(shard -> urlMappingRepository.findLiveSummariesByUserIdAndOriginalUrlHashes(user.getId(), originalUrlHashes, now))
+                .forEach(candidates::addAll);
+        return candidates;
+    }
+
+    /**
+     * Picks a candidate that a new shorten may return instead of creating a link: the same
+     * normalized URL and redirect policy, and live until at least minimumExpiry. The reused link
+     * keeps its own expiry, so of several matches the longest-lived one is returned.
+     * @return The link to reuse, or null if none qualifies.
+     */
+    static UrlSummary findReusable(List<UrlSummary> candidates, String normalizedUrl, RedirectPolicy policy, LocalDateTime minimumExpiry) {
+        UrlSummary best = null;
+        for (UrlSummary candidate : candidates) {
+            if ((candidate.getExpiresAt() != null && candidate.getExpiresAt().isBefore(minimumExpiry))
+                    || !policy.equals(RedirectPolicy.of(candidate.getPermanentRedirect(), candidate.getCacheMaxAgeSeconds()))
+                    || !normalizedUrl.equals(OriginalUrlHash.normalize(candidate.getOriginalUrl()))) {
+                continue;
+            }
+            if (best == null || candidate.getExpiresAt() == null
+                    || (best.getExpiresAt() != null && candidate.getExpiresAt().isAfter(best.getExpiresAt()))) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The earliest expiry a reused link may have. An explicit expiration date must not be cut
+     * short. A relative or default expiry counts from the request, so an earlier link for the
+     * same URL always expires sooner; it only has to outlive urls.dedup.min-remaining-minutes.
+     */
+    LocalDateTime minimumReuseExpiry(ShortenRequest shortenRequest, LocalDateTime expiresAt, LocalDateTime now) {
+        if (shortenRequest.getExpirationDate() != null && !shortenRequest.getExpirationDate().trim().isEmpty()) {
+            return expiresAt;
+        }
+        LocalDateTime floor = now.plusMinutes(dedupMinRemainingMinutes);
+        return floor.isBefore(expiresAt) ? floor : expiresAt;
+    }
+
+    LocalDateTime resolveExpiresAt(ShortenRequest shortenRequest) {
+        return resolveExpiresAt(shortenRequest, LocalDateTime.now());
+    }
+
+    /**
+     * @param now The time relative expiries count from, shared by every item of a batch so that
+     *            repeats with the same default expiry compare equal.
+     */
+    LocalDateTime resolveExpiresAt(ShortenRequest shortenRequest, LocalDateTime now) {
         if (shortenRequest.getExpirationDate() != null && !shortenRequest.getExpirationDate().trim().isEmpty()) {
             try {
-                urlMapping.setExpiresAt(LocalDateTime.parse(shortenRequest.getExpirationDate()));
+                return LocalDateTime.parse(shortenRequest.getExpirationDate());
             } catch (DateTimeParseException e) {
                 throw new RuntimeException("Invalid expiration date format. Use ISO format (YYYY-MM-DDTHH:mm:ss)");
             }
         } else if (shortenRequest.getExpiresInDays() != null && shortenRequest.getExpiresInDays() > 0) {
-            urlMapping.setExpiresAt(LocalDateTime.now().plusDays(shortenRequest.getExpiresInDays()));
-        } else {
-            // Default to 30 days if no expiration is specified
-            urlMapping.setExpiresAt(LocalDateTime.now().plusDays(30));
+            return now.plusDays(shortenRequest.getExpiresInDays());
         }
+        // Default to 30 days if no expiration is specified
+        return now.plusDays(30);
+    }
 
-        UrlMapping savedMapping = urlMappingRepository.save(urlMapping);
-
-        if (savedMapping.getExpiresAt() != null) {
-            long ttlSeconds = java.time.Duration.between(LocalDateTime.now(), savedMapping.getExpiresAt()).getSeconds();
-            redisTemplate.opsForValue().set(shortUrl, originalUrl, ttlSeconds, TimeUnit.SECONDS);
-        } else {
-            redisTemplate.opsForValue().set(shortUrl, originalUrl);
+    public boolean deleteUrl(String shortUrl, User user) {
+        long start = System.nanoTime();
+        // The lookup and the delete share one transaction on the code's shard
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        boolean deleted = shardRouter.onShardFor(shortUrl, () -> transaction.execute(status -> deleteMapping(shortUrl, user)));
+        if (!deleted) {
+            return false;
         }
 
-        return new UrlResponse(savedMapping, baseUrl);
+        // Delete from cache, including the in-process copy on every node
+        redisUrlCache.delete(shortUrl);
+        localUrlCache.invalidateEverywhere(shortUrl);
+
+        urlMetrics.recordDelete(start);
+        return true;
     }
 
-    @Transactional
-    public boolean deleteUrl(String shortUrl, User user) {
-        Optional<UrlMapping> urlMappingOptional = urlMappingRepository.findByShortUrl(shortUrl);
-        
-        if (urlMappingOptional.isPresent()) {
+    /**
+     * Changes how a link's redirect may be cached, typically to downgrade it to an uncacheable
+     * 302, and purges every copy this service holds. Responses browsers and CDNs have already
+     * cached are only dropped once their max-age runs out.
+     * @return The updated link, or null if it does not exist.
+     */
+    public UrlResponse updateRedirectPolicy(String shortUrl, User user, Boolean permanentRedirect, Integer cacheMaxAgeSeconds,
+                                            String baseUrl) {
+        RedirectPolicy policy = resolveRedirectPolicy(permanentRedirect, cacheMaxAgeSeconds);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        UrlMapping updated = shardRouter.onShardFor(shortUrl, () -> transaction.execute(status -> {
+            Optional<UrlMapping> urlMappingOptional = urlMappingRepository.findByShortUrl(shortUrl);
+            if (urlMappingOptional.isEmpty()) {
+                return null;
+            }
             UrlMapping urlMapping = urlMappingOptional.get();
-            
-            // Check if the user owns this URL
             if (!urlMapping.getUser().getId().equals(user.getId())) {
-                throw new RuntimeException("You don't have permission to delete this URL");
+                throw new RuntimeException("You don't have permission to change this URL");
             }
-            
-            // Delete from database
-            urlMappingRepository.delete(urlMapping);
-            
-            // Delete from cache
-            redisTemplate.delete(shortUrl);
-            
-            return true;
+            urlMapping.setPermanentRedirect(policy.isPermanent());
+            urlMapping.setCacheMaxAgeSeconds(policy.getMaxAgeSeconds());
+            LocalDateTime now = LocalDateTime.now();
+            urlMapping.setUpdatedAt(now);
+            // Edge snapshots pick up the new policy from this marker
+            urlMapping.setPolicyChangedAt(now);
+            return urlMapping;
+        }));
+        if (updated == null) {
+            return null;
         }
-        
-        return false;
+
+        redisUrlCache.delete(shortUrl);
+        localUrlCache.invalidateEverywhere(shortUrl);
+        return new UrlResponse(updated, baseUrl);
+    }
+
+    private boolean deleteMapping(String shortUrl, User user) {
+        Optional<UrlMapping> urlMappingOptional = urlMappingRepository.findByShortUrl(shortUrl);
+        if (urlMappingOptional.isEmpty()) {
+            return false;
+        }
+        UrlMapping urlMapping = urlMappingOptional.get();
+
+        // Check if the user owns this URL
+        if (!urlMapping.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("You don't have permission to delete this URL");
+        }
+
+        urlMappingRepository.delete(urlMapping);
+        // Edge snapshots and dashboard change feeds learn about the delete from this row
+        jdbcTemplate.update("INSERT INTO url_tombstones (short_url, user_id, deleted_at) VALUES (?, ?, ?)",
+                shortUrl, user.getId(), LocalDateTime.now());
+        return true;
     }
 
     public List<UrlResponse> getUserUrls(User user, String baseUrl) {
-        return urlMappingRepository.findByUser(user)
+        return mergeNewestFirst(shardRouter.onEveryShard(shard -> urlMappingRepository.findSummariesByUserId(user.getId())))
                 .stream()
-                .map(urlMapping -> new UrlResponse(urlMapping, baseUrl))
+                .map(urlSummary -> new UrlResponse(urlSummary, baseUrl))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Returns one page of the user's links, newest first, using keyset pagination on (createdAt, id).
+     * @param cursor The nextCursor of the previous page, or null for the first page.
+     * @param size Requested page size; defaults to urls.page.default-size and is capped at urls.page.max-size.
+     */
+    public UrlPage getUserUrlsPage(User user, String cursor, Integer size, String baseUrl) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        // Fetch one extra row to find out whether another page follows
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        // Every shard returns its own first pageSize + 1 rows after the cursor; the merged head is the page
+        List<List<UrlSummary>> perShard;
+        if (cursor == null || cursor.isBlank()) {
+            perShard = shardRouter.onEveryShard(shard -> urlMappingRepository.findPageByUserId(user.getId(), limit));
+        } else {
+            PageCursor after = decodeCursor(cursor);
+            perShard = shardRouter.onEveryShard(shard ->
+                    urlMappingRepository.findPageByUserIdAfter(user.getId(), after.createdAt(), after.id(), limit));
+        }
+        List<UrlSummary> merged = mergeNewestFirst(perShard);
+        List<UrlSummary> rows = merged.size() > pageSize + 1 ? merged.subList(0, pageSize + 1) : merged;
+
+        boolean hasMore = rows.size() > pageSize;
+        List<UrlSummary> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? encodeCursor(page.get(page.size() - 1)) : null;
+
+        return new UrlPage(page.stream().map(urlSummary -> new UrlResponse(urlSummary, baseUrl)).toList(), nextCursor);
+    }
+
+    /**
+     * A version of the user's link list that changes whenever a link is created, deleted or
+     * clicked (once the click is flushed). Costs two index lookups per shard, so it can be
+     * checked on every dashboard poll before any rows are read.
+     */
+    public String getUserUrlsVersion(User user) {
+        List<long[]> perShard = shardRouter.onEveryShard(shard -> new long[]{
+                toMicros(urlMappingRepository.findLastUpdatedAtByUserId(user.getId())),
+                toMicros(urlTombstoneRepository.findLastDeletedAtByUserId(user.getId()))
+        });
+        long updated = 0;
+        long deleted = 0;
+        for (long[] shardVersion : perShard) {
+            updated = Math.max(updated, shardVersion[0]);
+            deleted = Math.max(deleted, shardVersion[1]);
+        }
+        return "W/\"" + Long.toString(updated, 36) + "-" + Long.toString(deleted, 36) + "\"";
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time == null ? 0 : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    /**
+     * Returns the user's links created, clicked or deleted since the cursor, so a dashboard can
+     * keep its copy of the list current without fetching all of it. Changes may be repeated
+     * across calls and are meant to be applied as upserts keyed by short code.
+     * @param cursor The nextCursor of the previous call, or null to start with the full list.
+     */
+    public UrlChanges getUserUrlChanges(User user, String cursor, String baseUrl) {
+        LocalDateTime now = LocalDateTime.now();
+        String nextCursor = encodeSyncCursor(now);
+        LocalDateTime since = cursor == null || cursor.isBlank() ? null : decodeSyncCursor(cursor);
+        if (since == null || since.isBefore(now.minusHours(tombstoneRetentionHours))) {
+            return new UrlChanges(true, getUserUrls(user, baseUrl), List.of(), nextCursor);
+        }
+
+        LocalDateTime from = since.minus(Duration.ofMillis(syncOverlapMs));
+        List<UrlSummary> changed = mergeNewestFirst(shardRouter.onEveryShard(shard ->
+                urlMappingRepository.findSummariesByUserIdUpdatedSince(user.getId(), from)));
+        // A code deleted and created again is live
+        Set<String> live = changed.stream().map(UrlSummary::getShortUrl).collect(Collectors.toSet());
+        List<String> deleted = shardRouter.onEveryShard(shard -> urlTombstoneRepository.findShortUrlsDeletedSince(user.getId(), from))
+                .stream()
+                .flatMap(List::stream)
+                .filter(shortUrl -> !live.contains(shortUrl))
+                .distinct()
+                .toList();
+        return new UrlChanges(false, changed.stream().map(urlSummary -> new UrlResponse(urlSummary, baseUrl)).toList(),
+                deleted, nextCursor);
+    }
+
+    private static String encodeSyncCursor(LocalDateTime since) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(since.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LocalDateTime decodeSyncCursor(String cursor) {
+        try {
+            return LocalDateTime.parse(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static List<UrlSummary> mergeNewestFirst(List<List<UrlSummary>> perShard) {
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+        List<UrlSummary> merged = new ArrayList<>();
+        perShard.forEach(merged::addAll);
+        merged.sort(NEWEST_FIRST);
+        return merged;
+    }
+
+    /**
+     * Writes every link of the user as a JSON array, row by row from a database cursor, so full
+     * exports never hold the whole list in memory. With several shards the rows come one shard
+     * after the other, each newest first.
+     */
+    public void exportUserUrls(User user, String baseUrl, OutputStream outputStream) throws IOException {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        JdbcTemplate streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streamingJdbcTemplate.setFetchSize(exportFetchSize);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                shardRouter.onShard(shard, () -> readOnlyTransaction.executeWithoutResult(status ->
+                        streamingJdbcTemplate.query(EXPORT_SQL, rs -> {
+                            UrlSummary urlSummary = new UrlSummary(rs.getLong(1), rs.getString(2), rs.getString(3),
+                                    rs.getObject(4, LocalDateTime.class), rs.getObject(5, LocalDateTime.class), rs.getLong(6),
+                                    rs.getObject(7, Boolean.class), rs.getObject(8, Integer.class));
+                            try {
+                                generator.writeObject(new UrlResponse(urlSummary, baseUrl));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }, user.getId())));
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static String encodeCursor(UrlSummary last) {
+        String position = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PageCursor decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            return new PageCursor(LocalDateTime.parse(position[0]), Long.parseLong(position[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private record PageCursor(LocalDateTime createdAt, long id) {
+    }
+
+    public String getOriginalUrlAndTrackClick(String shortUrl) {
+        return getOriginalUrlAndTrackClick(shortUrl, null, null);
+    }
+
     /**
      * Finds the original URL for a given short code, handling caching and click tracking.
      * @param shortUrl The 7-character short code.
+     * @param referrer The Referer header, or null.
+     * @param userAgent The User-Agent header, or null.
      * @return The original long URL, or null if not found or expired.
+     * Read-only: expired rows are removed by {@link ExpiredLinkSweeper}, never on the redirect path.
      */
-    @Transactional
-    public String getOriginalUrlAndTrackClick(String shortUrl) {
-        // 1. Check cache first
-        String originalUrl = redisTemplate.opsForValue().get(shortUrl);
-        if (originalUrl != null) {
-            // Found in cache. Asynchronously update click count in DB.
-            incrementClickCount(shortUrl);
-            return originalUrl;
-        }
+    public String getOriginalUrlAndTrackClick(String shortUrl, String referrer, String userAgent) {
+        CachedUrl cachedUrl = resolveAndTrackClick(shortUrl, referrer, userAgent);
+        return cachedUrl == null ? null : cachedUrl.originalUrl();
+    }
 
-        // 2. If not in cache, check the database
-        Optional<UrlMapping> urlMappingOptional = urlMappingRepository.findByShortUrl(shortUrl);
-        if (urlMappingOptional.isPresent()) {
-            UrlMapping urlMapping = urlMappingOptional.get();
+    /**
+     * Like {@link #getOriginalUrlAndTrackClick(String, String, String)}, but also returns the
+     * link's expiry and {@link RedirectPolicy}, which the redirect response is built from.
+     * @return The resolved link, or null if not found or expired.
+     */
+    public CachedUrl resolveAndTrackClick(String shortUrl, String referrer, String userAgent) {
+        return resolve(shortUrl, referrer, userAgent, true);
+    }
 
-            // 3. Check for expiration
-            if (urlMapping.getExpiresAt() != null && urlMapping.getExpiresAt().isBefore(LocalDateTime.now())) {
-                urlMappingRepository.delete(urlMapping);
-                redisTemplate.delete(shortUrl); // Clean up cache
-                return null; // Link has expired
+    /**
+     * Resolves the link for a HEAD request: link checkers and crawlers probing it aren't clicks.
+     * @return The resolved link, or null if not found or expired.
+     */
+    public CachedUrl resolveWithoutClick(String shortUrl) {
+        return resolve(shortUrl, null, null, false);
+    }
+
+    private CachedUrl resolve(String shortUrl, String referrer, String userAgent, boolean trackClick) {
+        long start = System.nanoTime();
+
+        // 1. Check the in-process cache first
+        CachedUrl cachedUrl = localUrlCache.get(shortUrl);
+        if (cachedUrl != null) {
+            if (localUrlCache.shouldRefreshEarly(cachedUrl)) {
+                refreshInBackground(shortUrl);
+            }
+            if (trackClick) {
+                recordClick(shortUrl, referrer, userAgent);
             }
+            urlMetrics.recordRedirect(RedirectOutcome.LOCAL_HIT, start);
+            return cachedUrl;
+        }
+
+        // 2. Edge nodes answer from the mapped snapshot without Redis or the database
+        if (edgeRedirectIndex.isReady()) {
+            CachedUrl indexed = edgeRedirectIndex.lookup(shortUrl);
+            if (indexed != null) {
+                if (indexed.isExpired()) {
+                    urlMetrics.recordRedirect(RedirectOutcome.EXPIRED, start);
+                    return null;
+                }
+                if (trackClick) {
+                    recordClick(shortUrl, referrer, userAgent);
+                }
+                urlMetrics.recordRedirect(RedirectOutcome.SNAPSHOT_HIT, start);
+                return indexed;
+            }
+        }
+
+        // 3. Codes the filter has never seen definitely don't exist, unless another node's
+        // broadcast may not have reached it yet; only codes shaped like generated ones can be that
+        if (!shortCodeFilter.mightContain(shortUrl)
+                && !(ShortCodeGenerator.hasGeneratedForm(shortUrl) && shortCodeFilter.mayBeMissingCodes())) {
+            urlMetrics.recordRedirect(RedirectOutcome.FILTERED, start);
+            return null;
+        }
+
+        // 4. Then Redis, then the database; concurrent misses for the same code share one load
+        Resolution resolution = inFlightLoads.execute(shortUrl, () -> load(shortUrl));
+        if (trackClick && resolution.cachedUrl() != null) {
+            // The click is flushed to the DB in the background
+            recordClick(shortUrl, referrer, userAgent);
+        }
+        urlMetrics.recordRedirect(resolution.outcome(), start);
+        return resolution.cachedUrl();
+    }
 
-            // 4. Increment click count and save
-            urlMapping.setClickCount(urlMapping.getClickCount() + 1);
-            urlMappingRepository.save(urlMapping);
+    private Resolution load(String shortUrl) {
+        long loadStart = System.nanoTime();
+        CachedUrl cached = redisUrlCache.get(shortUrl);
+        urlMetrics.recordRedis(loadStart);
+        if (cached != null) {
+            return cacheLocally(shortUrl, cached, loadStart, RedirectOutcome.CACHE_HIT);
+        }
+        return loadFromDatabase(shortUrl, loadStart);
+    }
 
-            // 5. Cache the result for future requests
-            if (urlMapping.getExpiresAt() != null) {
-                long ttlSeconds = java.time.Duration.between(LocalDateTime.now(), urlMapping.getExpiresAt()).getSeconds();
-                redisTemplate.opsForValue().set(urlMapping.getShortUrl(), urlMapping.getOriginalUrl(), ttlSeconds, TimeUnit.SECONDS);
-            } else {
-                redisTemplate.opsForValue().set(urlMapping.getShortUrl(), urlMapping.getOriginalUrl());
+    /**
+     * Reads the code from the database and caches it. Only one node at a time does this for a
+     * given code; the others wait for the result to appear in Redis, and only query themselves
+     * if it doesn't.
+     */
+    private Resolution loadFromDatabase(String shortUrl, long loadStart) {
+        String lockToken = redisUrlCache.tryLockLoad(shortUrl);
+        if (lockToken == null) {
+            CachedUrl cached = redisUrlCache.awaitLoad(shortUrl);
+            if (cached != null) {
+                return cacheLocally(shortUrl, cached, loadStart, RedirectOutcome.CACHE_HIT);
             }
+        }
+        try {
+            long repositoryStart = System.nanoTime();
+            Optional<UrlMapping> urlMappingOptional = findMapping(shortUrl);
+            urlMetrics.recordRepository(repositoryStart);
+            if (urlMappingOptional.isEmpty()) {
+                return new Resolution(null, RedirectOutcome.NOT_FOUND);
+            }
+            UrlMapping urlMapping = urlMappingOptional.get();
+            if (urlMapping.getExpiresAt() != null && urlMapping.getExpiresAt().isBefore(LocalDateTime.now())) {
+                return new Resolution(null, RedirectOutcome.EXPIRED);
+            }
+            CachedUrl loaded = toCachedUrl(urlMapping);
+            redisUrlCache.put(shortUrl, loaded);
+            return cacheLocally(shortUrl, loaded, loadStart, RedirectOutcome.DB_HIT);
+        } finally {
+            if (lockToken != null) {
+                redisUrlCache.unlockLoad(shortUrl, lockToken);
+            }
+        }
+    }
 
-            return urlMapping.getOriginalUrl();
+    private Optional<UrlMapping> findMapping(String shortUrl) {
+        int home = shardRouter.shardFor(shortUrl);
+        Optional<UrlMapping> urlMappingOptional = shardRouter.onShard(home, () -> urlMappingRepository.findByShortUrl(shortUrl));
+        if (urlMappingOptional.isEmpty() && replicasEnabled) {
+            // The replica may not have caught up with a code created moments ago
+            urlMappingOptional = ReplicaRoutingDataSource.onPrimary(() -> urlMappingRepository.findByShortUrl(shortUrl));
         }
+        if (urlMappingOptional.isEmpty() && shardRouter.isLookupFallback()) {
+            // A rebalance may not have moved the row to its new shard yet
+            for (int shard = 0; shard < shardRouter.shardCount() && urlMappingOptional.isEmpty(); shard++) {
+                if (shard != home) {
+                    urlMappingOptional = shardRouter.onShard(shard, () -> urlMappingRepository.findByShortUrl(shortUrl));
+                }
+            }
+        }
+        return urlMappingOptional;
+    }
 
-        // 6. If not found anywhere
-        return null;
+    private static CachedUrl toCachedUrl(UrlMapping urlMapping) {
+        return new CachedUrl(urlMapping.getOriginalUrl(), urlMapping.getExpiresAt(),
+                RedirectPolicy.of(urlMapping.getPermanentRedirect(), urlMapping.getCacheMaxAgeSeconds()));
     }
 
-    private void incrementClickCount(String shortUrl) {
-        // This database operation can be slow, so in a high-traffic system,
-        // you might move this to a separate, asynchronous task queue.
-        urlMappingRepository.findByShortUrl(shortUrl).ifPresent(urlMapping -> {
-            urlMapping.setClickCount(urlMapping.getClickCount() + 1);
-            urlMappingRepository.save(urlMapping);
-        });
+    private Resolution cacheLocally(String shortUrl, CachedUrl loaded, long loadStart, RedirectOutcome outcome) {
+        long now = System.nanoTime();
+        CachedUrl cachedUrl = new CachedUrl(loaded.originalUrl(), loaded.expiresAt(), loaded.policy(), now, now - loadStart);
+        localUrlCache.put(shortUrl, cachedUrl);
+        return new Resolution(cachedUrl, outcome);
+    }
+
+    /**
+     * Reloads a hot code before its in-process entry expires. The Redis copy is reused unless it
+     * is close to expiring as well, in which case it is rewritten from the database.
+     */
+    private void refreshInBackground(String shortUrl) {
+        if (!refreshing.add(shortUrl)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    long loadStart = System.nanoTime();
+                    RedisUrlCache.Entry entry = redisUrlCache.getWithTtl(shortUrl);
+                    if (entry.cachedUrl() != null && !redisUrlCache.isDueForRefresh(entry)) {
+                        cacheLocally(shortUrl, entry.cachedUrl(), loadStart, RedirectOutcome.CACHE_HIT);
+                    } else if (inFlightLoads.execute(shortUrl, () -> loadFromDatabase(shortUrl, loadStart)).cachedUrl() == null) {
+                        localUrlCache.invalidateLocal(shortUrl);
+                    }
+                } catch (RuntimeException e) {
+                    // The entry just expires as it would have without the early refresh
+                    log.debug("Early refresh of {} failed", shortUrl, e);
+                } finally {
+                    refreshing.remove(shortUrl);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(shortUrl);
+        }
     }
 
+    /**
+     * Journals the click when the journal is enabled, otherwise counts it in memory.
+     * Journalled clicks reach the histograms when they are replayed.
+     */
+    private void recordClick(String shortUrl, String referrer, String userAgent) {
+        if (!clickJournal.append(shortUrl, referrer, userAgent)) {
+            clickCountAggregator.record(shortUrl);
+            clickStatsService.record(shortUrl, System.currentTimeMillis());
+        }
+    }
 
-    private String generateShortUrl() {
-        String shortUrl;
-        do {
-            shortUrl = RandomStringUtils.randomAlphanumeric(7);
-        } while (urlMappingRepository.findByShortUrl(shortUrl).isPresent());
-        return shortUrl;
+    /**
+     * Inserts the mapping without checking the code first. Generated codes are unique by
+     * construction, so the unique index only trips when one happens to equal a custom alias;
+     * in that case the next code is taken.
+     */
+    private UrlMapping saveMapping(UrlMapping urlMapping, boolean generatedCode) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return shardRouter.onShardFor(urlMapping.getShortUrl(), () -> urlMappingRepository.save(urlMapping));
+            } catch (DataIntegrityViolationException e) {
+                if (!generatedCode) {
+                    throw new RuntimeException("Custom alias is already taken");
+                }
+                if (attempt >= MAX_CODE_ATTEMPTS) {
+                    throw e;
+                }
+                urlMetrics.recordCodeRetry();
+                urlMapping.setId(null);
+                urlMapping.setShortUrl(shortCodeGenerator.nextCode());
+            }
+        }
     }
 }
-
@@ -0,0 +1,407 @@
+package com.example.url_shortner.perf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-process stand-in for Redis that speaks RESP2 on a loopback port, covering the commands
+ * the application sends: strings with expiry, INCRBY, the compare-and-delete unlock script and
+ * pub/sub. HELLO is refused so Lettuce falls back to RESP2. Each connection is served by its own
+ * virtual thread and replies are flushed once the pipelined input is drained.
+ * <p>
+ * {@code latency} is added before every reply, to see how the service behaves when Redis is a
+ * network hop away rather than in the same process.
+ */
+public class FakeRedisServer implements Closeable {
+
+    private static final String UNLOCK_SCRIPT_MARKER = "redis.call('get', KEYS[1]) == ARGV[1]";
+
+    private record Value(byte[] data, long expiresAtMillis) {
+
+        boolean isExpired(long now) {
+            return expiresAtMillis > 0 && expiresAtMillis <= now;
+        }
+    }
+
+    private final Map<String, Value> data = new ConcurrentHashMap<>();
+    private final Map<String, Set<Connection>> subscribers = new ConcurrentHashMap<>();
+    private final ServerSocket serverSocket;
+    private final long latencyNanos;
+    private volatile boolean closed;
+
+    public FakeRedisServer(Duration latency) throws IOException {
+        this.latencyNanos = latency.toNanos();
+        this.serverSocket = new ServerSocket(0, 512, InetAddress.getLoopbackAddress());
+        Thread.ofPlatform().daemon().name("fake-redis-accept").start(this::acceptLoop);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getKeyCount() {
+        return data.size();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread.ofVirtual().name("fake-redis-conn").start(() -> new Connection(socket).serve());
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Fake Redis accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+    }
+
+    private class Connection {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        // Publishers on other connections write into this one's stream
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+        Connection(Socket socket) {
+            this.socket = socket;
+            try {
+                this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void serve() {
+            try (socket) {
+                while (!closed) {
+                    List<byte[]> command = readCommand();
+                    if (command == null) {
+                        return;
+                    }
+                    if (latencyNanos > 0) {
+                        Thread.sleep(Duration.ofNanos(latencyNanos));
+                    }
+                    writeLock.lock();
+                    try {
+                        execute(command);
+                        if (in.available() == 0) {
+                            out.flush();
+                        }
+                    } finally {
+                        writeLock.unlock();
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // Client went away
+            } finally {
+                channels.forEach(channel -> subscribers.getOrDefault(channel, Set.of()).remove(this));
+            }
+        }
+
+        private List<byte[]> readCommand() throws IOException {
+            int type = in.read();
+            if (type == -1) {
+                return null;
+            }
+            if (type != '*') {
+                throw new IOException("Expected a RESP array, got '" + (char) type + "'");
+            }
+            int count = (int) readNumber();
+            List<byte[]> args = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (in.read() != '$') {
+                    throw new IOException("Expected a RESP bulk string");
+                }
+                byte[] arg = new byte[(int) readNumber()];
+                int read = 0;
+                while (read < arg.length) {
+                    int n = in.read(arg, read, arg.length - read);
+                    if (n == -1) {
+                        throw new EOFException();
+                    }
+                    read += n;
+                }
+                in.skipNBytes(2);
+                args.add(arg);
+            }
+            return args;
+        }
+
+        // Reads digits up to and including the CRLF
+        private long readNumber() throws IOException {
+            long value = 0;
+            boolean negative = false;
+            for (int c = in.read(); c != '\r'; c = in.read()) {
+                if (c == -1) {
+                    throw new EOFException();
+                }
+                if (c == '-') {
+                    negative = true;
+                } else {
+                    value = value * 10 + (c - '0');
+                }
+            }
+            in.read();
+            return negative ? -value : value;
+        }
+
+        private void execute(List<byte[]> command) throws IOException {
+            String name = string(command.get(0)).toUpperCase(Locale.ROOT);
+            long now = System.currentTimeMillis();
+            switch (name) {
+                case "PING" -> {
+                    if (channels.isEmpty()) {
+                        simple("PONG");
+                    } else {
+                        array(2);
+                        bulk("pong");
+                        bulk("");
+                    }
+                }
+                case "AUTH", "SELECT", "CLIENT" -> simple("OK");
+                case "HELLO" -> error("ERR unknown command 'HELLO'");
+                case "INFO" -> bulk("# Server\r\nredis_version:7.0.0\r\nredis_mode:standalone\r\n");
+                case "GET" -> bulk(get(string(command.get(1)), now));
+                case "SET" -> set(command, now);
+                case "DEL" -> {
+                    long removed = 0;
+                    for (int i = 1; i < command.size(); i++) {
+                        Value removedValue = data.remove(string(command.get(i)));
+                        if (removedValue != null && !removedValue.isExpired(now)) {
+                            removed++;
+                        }
+                    }
+                    integer(removed);
+                }
+                case "EXISTS" -> {
+                    long present = 0;
+                    for (int i = 1; i < command.size(); i++) {
+                        if (get(string(command.get(i)), now) != null) {
+                            present++;
+                        }
+                    }
+                    integer(present);
+                }
+                case "PTTL" -> {
+                    Value value = data.get(string(command.get(1)));
+                    if (value == null || value.isExpired(now)) {
+                        integer(-2);
+                    } else {
+                        integer(value.expiresAtMillis() == 0 ? -1 : value.expiresAtMillis() - now);
+                    }
+                }
+                case "INCR", "INCRBY" -> incrBy(string(command.get(1)), name.equals("INCR") ? 1 : Long.parseLong(string(command.get(2))), now);
+                case "EVALSHA" -> error("NOSCRIPT No matching script. Please use EVAL.");
+                case "EVAL" -> eval(command, now);
+                case "PUBLISH" -> integer(publish(string(command.get(1)), command.get(2)));
+                case "SUBSCRIBE" -> {
+                    for (int i = 1; i < command.size(); i++) {
+                        String channel = string(command.get(i));
+                        channels.add(channel);
+                        subscribers.computeIfAbsent(channel, k -> new CopyOnWriteArraySet<>()).add(this);
+                        array(3);
+                        bulk("subscribe");
+                        bulk(channel);
+                        integer(channels.size());
+                    }
+                }
+                case "UNSUBSCRIBE" -> {
+                    List<String> targets = new ArrayList<>();
+                    for (int i = 1; i < command.size(); i++) {
+                        targets.add(string(command.get(i)));
+                    }
+                    if (targets.isEmpty()) {
+                        targets.addAll(channels);
+                    }
+                    for (String channel : targets) {
+                        channels.remove(channel);
+                        subscribers.getOrDefault(channel, Set.of()).remove(this);
+                        array(3);
+                        bulk("unsubscribe");
+                        bulk(channel);
+                        integer(channels.size());
+                    }
+                }
+                case "QUIT" -> {
+                    simple("OK");
+                    out.flush();
+                    socket.close();
+                }
+                default -> error("ERR unknown command '" + name + "'");
+            }
+        }
+
+        private void set(List<byte[]> command, long now) throws IOException {
+            String key = string(command.get(1));
+            long expiresAt = 0;
+            boolean ifAbsent = false;
+            boolean ifPresent = false;
+            for (int i = 3; i < command.size(); i++) {
+                switch (string(command.get(i)).toUpperCase(Locale.ROOT)) {
+                    case "EX" -> expiresAt = now + Long.parseLong(string(command.get(++i))) * 1000;
+                    case "PX" -> expiresAt = now + Long.parseLong(string(command.get(++i)));
+                    case "NX" -> ifAbsent = true;
+                    case "XX" -> ifPresent = true;
+                    default -> {
+                        error("ERR syntax error");
+                        return;
+                    }
+                }
+            }
+            Value value = new Value(command.get(2), expiresAt);
+            if (ifAbsent || ifPresent) {
+                boolean[] written = new boolean[1];
+                boolean mustExist = ifPresent;
+                data.compute(key, (k, existing) -> {
+                    boolean exists = existing != null && !existing.isExpired(now);
+                    written[0] = exists == mustExist;
+                    return written[0] ? value : existing;
+                });
+                if (!written[0]) {
+                    nullBulk();
+                    return;
+                }
+            } else {
+                data.put(key, value);
+            }
+            simple("OK");
+        }
+
+        private void incrBy(String key, long delta, long now) throws IOException {
+            long[] result = new long[1];
+            try {
+                data.compute(key, (k, existing) -> {
+                    boolean live = existing != null && !existing.isExpired(now);
+                    result[0] = (live ? Long.parseLong(string(existing.data())) : 0) + delta;
+                    return new Value(Long.toString(result[0]).getBytes(StandardCharsets.UTF_8), live ? existing.expiresAtMillis() : 0);
+                });
+            } catch (NumberFormatException e) {
+                error("ERR value is not an integer or out of range");
+                return;
+            }
+            integer(result[0]);
+        }
+
+        private void eval(List<byte[]> command, long now) throws IOException {
+            // Only the lock release script is needed; anything else is a gap in this stand-in
+            if (!string(command.get(1)).contains(UNLOCK_SCRIPT_MARKER) || Integer.parseInt(string(command.get(2))) != 1) {
+                error("ERR scripts other than the load lock release are not supported");
+                return;
+            }
+            String key = string(command.get(3));
+            byte[] expected = command.get(4);
+            boolean[] removed = new boolean[1];
+            data.computeIfPresent(key, (k, existing) -> {
+                if (!existing.isExpired(now) && Arrays.equals(existing.data(), expected)) {
+                    removed[0] = true;
+                    return null;
+                }
+                return existing;
+            });
+            integer(removed[0] ? 1 : 0);
+        }
+
+        private byte[] get(String key, long now) {
+            Value value = data.get(key);
+            if (value == null) {
+                return null;
+            }
+            if (value.isExpired(now)) {
+                data.remove(key, value);
+                return null;
+            }
+            return value.data();
+        }
+
+        void deliver(String channel, byte[] message) {
+            writeLock.lock();
+            try {
+                array(3);
+                bulk("message");
+                bulk(channel);
+                bulk(message);
+                out.flush();
+            } catch (IOException e) {
+                // The subscriber's own thread notices the broken connection
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void simple(String value) throws IOException {
+            out.write(('+' + value + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void error(String message) throws IOException {
+            out.write(('-' + message + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void integer(long value) throws IOException {
+            out.write((":" + value + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void array(int size) throws IOException {
+            out.write(("*" + size + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void bulk(String value) throws IOException {
+            bulk(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void bulk(byte[] value) throws IOException {
+            if (value == null) {
+                nullBulk();
+                return;
+            }
+            out.write(("$" + value.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(value);
+            out.write('\r');
+            out.write('\n');
+        }
+
+        private void nullBulk() throws IOException {
+            out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private int publish(String channel, byte[] message) {
+        Set<Connection> receivers = subscribers.getOrDefault(channel, Set.of());
+        receivers.forEach(receiver -> receiver.deliver(channel, message));
+        return receivers.size();
+    }
+
+    // Keys and arguments are treated as Latin-1 so arbitrary bytes survive the round trip
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.url_shortner.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays a traffic mix against a running instance: redirects of a seeded link corpus with
+ * Zipf-distributed popularity, single and batch shortens, and dashboard clients polling
+ * GET /api/urls/my-urls/changes with their cursor and ETag. Each of {@code concurrency}
+ * virtual-thread workers sends its next request as soon as the previous one answers, so the
+ * result is the throughput the service sustains at that concurrency and the latency it takes.
+ * Requests during the warm-up are sent but not counted.
+ */
+class LoadGenerator {
+
+    enum Operation {
+        REDIRECT("GET /{shortUrl}"),
+        SHORTEN("POST /api/urls/shorten"),
+        BATCH("POST /api/urls/shorten/batch"),
+        DASHBOARD("GET /api/urls/my-urls/changes");
+
+        private final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    record Settings(Duration duration, Duration warmup, int concurrency, int links, int users,
+                    double zipfExponent, Map<Operation, Integer> mix, int batchSize) {
+    }
+
+    private static final String PASSWORD = "perf-password";
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private static class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final Map<String, LongAdder> errorReasons = new ConcurrentHashMap<>();
+
+        void error(String reason) {
+            errors.increment();
+            errorReasons.computeIfAbsent(reason, k -> new LongAdder()).increment();
+        }
+    }
+
+    // A dashboard client; concurrent polls of one session may race on the cursor, which only re-sends changes
+    private static class Session {
+        final String token;
+        volatile String cursor;
+        volatile String etag;
+
+        Session(String token) {
+            this.token = token;
+        }
+    }
+
+    private final String baseUrl;
+    private final Settings settings;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final List<Session> sessions = new ArrayList<>();
+    private final AtomicLong urlSequence = new AtomicLong();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private String[] codes;
+    private ZipfSampler zipf;
+    private long measuredNanos;
+
+    LoadGenerator(String baseUrl, Settings settings) {
+        this.baseUrl = baseUrl;
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        List<Operation> weighted = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int sum = 0;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+            int weight = settings.mix().getOrDefault(operation, 0);
+            if (weight > 0) {
+                sum += weight;
+                weighted.add(operation);
+                cumulative.add(sum);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("The traffic mix has no operation with a positive weight");
+        }
+        this.operations = weighted.toArray(Operation[]::new);
+        this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Registers the users and shortens the link corpus that redirects are drawn from.
+     */
+    void setUp() throws IOException, InterruptedException {
+        for (int i = 0; i < settings.users(); i++) {
+            String username = "perf-user-" + i;
+            send(post("/api/auth/register", Map.of("username", username, "email", username + "@example.com", "password", PASSWORD), null), 200);
+            HttpResponse<String> login = send(post("/api/auth/login", Map.of("username", username, "password", PASSWORD), null), 200);
+            sessions.add(new Session(objectMapper.readTree(login.body()).path("jwt").asText()));
+        }
+
+        List<String> seeded = new ArrayList<>(settings.links());
+        for (int offset = 0; offset < settings.links(); offset += SEED_BATCH_SIZE) {
+            Session owner = sessions.get((offset / SEED_BATCH_SIZE) % sessions.size());
+            HttpResponse<String> response = send(post("/api/urls/shorten/batch",
+                    newUrls(Math.min(SEED_BATCH_SIZE, settings.links() - offset)), owner.token), 200);
+            for (JsonNode result : objectMapper.readTree(response.body())) {
+                if (result.path("url").hasNonNull("shortUrl")) {
+                    seeded.add(result.path("url").path("shortUrl").asText());
+                }
+            }
+        }
+        if (seeded.isEmpty()) {
+            throw new IllegalStateException("Seeding the link corpus produced no short codes");
+        }
+        // Popularity should not follow creation order
+        Collections.shuffle(seeded);
+        codes = seeded.toArray(String[]::new);
+        zipf = new ZipfSampler(codes.length, settings.zipfExponent());
+    }
+
+    void run() {
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < settings.concurrency(); i++) {
+                workers.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        Operation operation = nextOperation();
+                        long sent = System.nanoTime();
+                        String failure = execute(operation);
+                        long answered = System.nanoTime();
+                        if (sent >= measureFrom && answered <= end) {
+                            Stats operationStats = stats.get(operation);
+                            operationStats.latency.record((answered - sent) / 1000);
+                            if (failure != null) {
+                                operationStats.error(failure);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        measuredNanos = settings.duration().toNanos();
+    }
+
+    private Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * @return Null on success, otherwise why the request failed.
+     */
+    private String execute(Operation operation) {
+        try {
+            return switch (operation) {
+                case REDIRECT -> redirect();
+                case SHORTEN -> expect(send(post("/api/urls/shorten", Map.of("originalUrl", nextUrl()), randomSession().token)), 200);
+                case BATCH -> batch();
+                case DASHBOARD -> poll(randomSession());
+            };
+        } catch (IOException | RuntimeException e) {
+            return e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    private String redirect() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + codes[zipf.next()]))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        return status == 301 || status == 302 ? null : "HTTP " + status;
+    }
+
+    private String batch() throws IOException, InterruptedException {
+        HttpResponse<String> response = send(post("/api/urls/shorten/batch", newUrls(settings.batchSize()), randomSession().token));
+        if (response.statusCode() != 200) {
+            return "HTTP " + response.statusCode();
+        }
+        for (JsonNode result : objectMapper.readTree(response.body())) {
+            if (result.hasNonNull("error")) {
+                return "item error";
+            }
+        }
+        return null;
+    }
+
+    private String poll(Session session) throws IOException, InterruptedException {
+        String cursor = session.cursor;
+        String etag = session.etag;
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/urls/my-urls/changes"
+                        + (cursor == null ? "" : "?cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8))))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Bearer " + session.token)
+                .GET();
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 304) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            return "HTTP " + response.statusCode();
+        }
+        session.cursor = objectMapper.readTree(response.body()).path("nextCursor").asText(null);
+        session.etag = response.headers().firstValue("ETag").orElse(null);
+        return null;
+    }
+
+    private List<Map<String, String>> newUrls(int count) {
+        List<Map<String, String>> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(Map.of("originalUrl", nextUrl()));
+        }
+        return requests;
+    }
+
+    private String nextUrl() {
+        return "https://example.com/perf/" + urlSequence.incrementAndGet();
+    }
+
+    private Session randomSession() {
+        return sessions.get(ThreadLocalRandom.current().nextInt(sessions.size()));
+    }
+
+    private HttpRequest post(String path, Object body, String token) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return request.build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(HttpRequest request, int expectedStatus) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(request);
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(request.method() + " " + request.uri().getPath() + " answered "
+                    + response.statusCode() + " during setup: " + response.body());
+        }
+        return response;
+    }
+
+    private static String expect(HttpResponse<String> response, int expectedStatus) {
+        return response.statusCode() == expectedStatus ? null : "HTTP " + response.statusCode();
+    }
+
+    void printReport(PrintStream out) {
+        double seconds = measuredNanos / 1e9;
+        out.printf("%nLoad test: %d workers, %d links (Zipf s=%.2f), %d users, %s measured after %s warm-up%n",
+                settings.concurrency(), codes.length, settings.zipfExponent(), settings.users(), settings.duration(), settings.warmup());
+        out.printf("%-32s %10s %9s %8s %10s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "error%", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long totalCount = 0;
+        for (Operation operation : Operation.values()) {
+            Stats operationStats = stats.get(operation);
+            long count = operationStats.latency.count();
+            if (count == 0) {
+                continue;
+            }
+            totalCount += count;
+            long errors = operationStats.errors.sum();
+            out.printf("%-32s %10d %9d %7.2f%% %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.endpoint, count, errors, 100.0 * errors / count, count / seconds,
+                    millis(operationStats.latency.percentile(0.50)), millis(operationStats.latency.percentile(0.99)),
+                    millis(operationStats.latency.percentile(0.999)), millis(operationStats.latency.max()));
+            operationStats.errorReasons.forEach((reason, times) ->
+                    out.printf("%-32s   %d x %s%n", "", times.sum(), reason));
+        }
+        out.printf("%-32s %10d %30.1f%n", "total", totalCount, totalCount / seconds);
+    }
+
+    /**
+     * One CSV row per endpoint, latencies in microseconds, for comparing runs.
+     */
+    void writeReport(Path file) throws IOException {
+        double seconds = measuredNanos / 1e9;
+        StringBuilder csv = new StringBuilder("endpoint,requests,errors,requests_per_second,p50_us,p99_us,p999_us,max_us\n");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram latency = stats.get(operation).latency;
+            if (latency.count() == 0) {
+                continue;
+            }
+            csv.append(operation.endpoint).append(',')
+                    .append(latency.count()).append(',')
+                    .append(stats.get(operation).errors.sum()).append(',')
+                    .append(String.format(Locale.ROOT, "%.1f", latency.count() / seconds)).append(',')
+                    .append(latency.percentile(0.50)).append(',')
+                    .append(latency.percentile(0.99)).append(',')
+                    .append(latency.percentile(0.999)).append(',')
+                    .append(latency.max()).append('\n');
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(file, csv);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.url_shortner.perf;
+
+import com.example.url_shortner.UrlShortnerApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Boots the application with the "perf" profile against an embedded H2 database and a
+ * {@link FakeRedisServer}, seeds it, drives it with a {@link LoadGenerator} and prints the
+ * per-endpoint results. Run with {@code ./mvnw -Pperf test-compile exec:exec}; the knobs are
+ * system properties (see the perf profile in pom.xml), e.g. {@code -Dperf.concurrency=500}.
+ * <p>
+ * Client, server, database and Redis share one machine, so the numbers are for comparing
+ * changes against each other, not for sizing production.
+ */
+public class PerfMain {
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator.Settings settings = new LoadGenerator.Settings(
+                duration(System.getProperty("perf.duration", "60s")),
+                duration(System.getProperty("perf.warmup", "10s")),
+                Integer.getInteger("perf.concurrency", 200),
+                Integer.getInteger("perf.links", 20_000),
+                Integer.getInteger("perf.users", 20),
+                Double.parseDouble(System.getProperty("perf.zipf-exponent", "1.0")),
+                mix(System.getProperty("perf.mix", "redirect:90,shorten:4,batch:1,dashboard:5")),
+                Integer.getInteger("perf.batch-size", 100));
+        Path reportFile = Path.of(System.getProperty("perf.report-file", "target/perf-report.csv"));
+
+        // Devtools would relaunch main in a restart class loader; it is only read as a system property
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        try (FakeRedisServer redis = new FakeRedisServer(duration(System.getProperty("perf.redis-latency", "0ms")))) {
+            // Command-line arguments outrank the profile's properties file
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(UrlShortnerApplication.class)
+                    .profiles("perf")
+                    .run("--server.port=0", "--spring.data.redis.port=" + redis.getPort());
+            try {
+                int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+                LoadGenerator generator = new LoadGenerator("http://localhost:" + port, settings);
+                System.out.printf("Seeding %d links for %d users on port %d%n", settings.links(), settings.users(), port);
+                generator.setUp();
+                System.out.printf("Running for %s after a %s warm-up%n", settings.duration(), settings.warmup());
+                generator.run();
+
+                generator.printReport(System.out);
+                printRedirectOutcomes(context.getBean(MeterRegistry.class));
+                System.out.printf("Fake Redis holds %d keys%n", redis.getKeyCount());
+                generator.writeReport(reportFile);
+                System.out.println("Wrote " + reportFile.toAbsolutePath());
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    // Where redirects were answered from, warm-up included, to explain the redirect latencies
+    private static void printRedirectOutcomes(MeterRegistry registry) {
+        long total = registry.find("url.redirect").timers().stream().mapToLong(Timer::count).sum();
+        if (total == 0) {
+            return;
+        }
+        System.out.println("Redirect outcomes:");
+        for (Timer timer : registry.find("url.redirect").timers()) {
+            if (timer.count() > 0) {
+                System.out.printf("  %-14s %6.2f%%%n", timer.getId().getTag("outcome"), 100.0 * timer.count() / total);
+            }
+        }
+    }
+
+    // "redirect:90,shorten:4,batch:1,dashboard:5"
+    private static Map<LoadGenerator.Operation, Integer> mix(String value) {
+        Map<LoadGenerator.Operation, Integer> mix = new EnumMap<>(LoadGenerator.Operation.class);
+        for (String part : value.split(",")) {
+            String[] weight = part.trim().split(":");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid perf.mix entry: " + part);
+            }
+            mix.put(LoadGenerator.Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+        }
+        return mix;
+    }
+
+    // "250ms", "30s", "5m"
+    private static Duration duration(String value) {
+        String trimmed = value.trim().toLowerCase(Locale.ROOT);
+        if (trimmed.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(trimmed.substring(0, trimmed.length() - 2)));
+        }
+        if (trimmed.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(trimmed.substring(0, trimmed.length() - 1)));
+        }
+        if (trimmed.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(trimmed.substring(0, trimmed.length() - 1)));
+        }
+        throw new IllegalArgumentException("Invalid duration: " + value);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.url_shortner.config;
+
+import com.example.url_shortner.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitFilterTests {
+
+    private final RateLimiter rateLimiter = mock(RateLimiter.class);
+    private final RateLimitFilter filter = new RateLimitFilter(rateLimiter, mock(JwtUtil.class));
+
+    @Test
+    void allowedRequestContinuesDownTheChain() throws Exception {
+        when(rateLimiter.tryAcquire(eq(RateLimiter.Limit.AUTH), anyString())).thenReturn(0L);
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("POST", "/api/auth/login"), response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(chain.getRequest()).isNotNull();
+    }
+
+    @Test
+    void rejectedRequestGets429WithRetryAfterRoundedUpToSeconds() throws Exception {
+        assertThat(retryAfter(1)).isEqualTo("1");
+        assertThat(retryAfter(TimeUnit.MILLISECONDS.toNanos(1500))).isEqualTo("2");
+        assertThat(retryAfter(TimeUnit.SECONDS.toNanos(10))).isEqualTo("10");
+    }
+
+    @Test
+    void requestsAreClassifiedByEndpoint() {
+        assertThat(RateLimitFilter.classify(request("GET", "/abc1234"))).isEqualTo(RateLimiter.Limit.REDIRECT);
+        assertThat(RateLimitFilter.classify(request("POST", "/api/urls/shorten"))).isEqualTo(RateLimiter.Limit.SHORTEN);
+        assertThat(RateLimitFilter.classify(request("POST", "/api/urls/shorten/batch"))).isEqualTo(RateLimiter.Limit.SHORTEN);
+        assertThat(RateLimitFilter.classify(request("POST", "/api/auth/register"))).isEqualTo(RateLimiter.Limit.AUTH);
+        assertThat(RateLimitFilter.classify(request("GET", "/api/urls/my-urls"))).isNull();
+    }
+
+    @Test
+    void anonymousShortenIsCountedAgainstTheAddress() throws Exception {
+        when(rateLimiter.tryAcquire(eq(RateLimiter.Limit.SHORTEN), anyString())).thenReturn(0L);
+        MockHttpServletRequest request = request("POST", "/api/urls/shorten");
+        request.setRemoteAddr("203.0.113.7");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(rateLimiter).tryAcquire(RateLimiter.Limit.SHORTEN, "ip:203.0.113.7");
+    }
+
+    private String retryAfter(long waitNanos) throws Exception {
+        when(rateLimiter.tryAcquire(eq(RateLimiter.Limit.AUTH), anyString())).thenReturn(waitNanos);
+        FilterChain chain = mock(FilterChain.class);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("POST", "/api/auth/login"), response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        verify(chain, never()).doFilter(any(), any());
+        return response.getHeader(HttpHeaders.RETRY_AFTER);
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.url_shortner.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClickCountAggregatorTests {
+
+    private final Map<String, Long> written = new ConcurrentHashMap<>();
+    private JdbcTemplate jdbcTemplate;
+    private ClickCountAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(eq(ClickCountAggregator.INCREMENT_SQL), anyList())).thenAnswer(invocation -> {
+            List<Object[]> batch = invocation.getArgument(1);
+            for (Object[] row : batch) {
+                written.merge((String) row[2], (Long) row[0], Long::sum);
+            }
+            return new int[batch.size()];
+        });
+
+        aggregator = new ClickCountAggregator();
+        ReflectionTestUtils.setField(aggregator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(aggregator, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(aggregator, "taskScheduler", mock(TaskScheduler.class));
+        ReflectionTestUtils.setField(aggregator, "shardRouter", new ShardRouter());
+        // Only the test's own flushes
+        ReflectionTestUtils.setField(aggregator, "maxUnflushed", Long.MAX_VALUE);
+    }
+
+    @Test
+    void clicksAreSummedPerCodeAndWrittenOnce() {
+        aggregator.record("abc");
+        aggregator.record("abc");
+        aggregator.record("xyz", 5);
+        assertThat(aggregator.getUnflushedClicks()).isEqualTo(7);
+
+        aggregator.flush();
+        aggregator.flush();
+
+        assertThat(written).containsExactlyInAnyOrderEntriesOf(Map.of("abc", 2L, "xyz", 5L));
+        assertThat(aggregator.getUnflushedClicks()).isZero();
+    }
+
+    @Test
+    void noClicksAreLostWhileFlushesRunConcurrently() throws InterruptedException {
+        int recorders = 8;
+        int clicksPerRecorder = 200_000;
+        AtomicBoolean recording = new AtomicBoolean(true);
+        AtomicInteger flushes = new AtomicInteger();
+        Thread flusher = new Thread(() -> {
+            while (recording.get()) {
+                aggregator.flush();
+                flushes.incrementAndGet();
+            }
+        });
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < recorders; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < clicksPerRecorder; i++) {
+                    // Half on one hot code, the rest spread so codes keep going idle between flushes
+                    aggregator.record(i % 2 == 0 ? "hot" : "code" + i % 100);
+                }
+            }));
+        }
+
+        flusher.start();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        recording.set(false);
+        flusher.join();
+        aggregator.flush();
+
+        assertThat(flushes.get()).isGreaterThan(1);
+        assertThat(written.get("hot")).isEqualTo((long) recorders * clicksPerRecorder / 2);
+        assertThat(written.values().stream().mapToLong(Long::longValue).sum()).isEqualTo((long) recorders * clicksPerRecorder);
+        assertThat(aggregator.getUnflushedClicks()).isZero();
+    }
+
+    @Test
+    void failedBatchIsRetriedOnTheNextFlush() {
+        when(jdbcTemplate.batchUpdate(eq(ClickCountAggregator.INCREMENT_SQL), anyList()))
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenAnswer(invocation -> {
+                    List<Object[]> batch = invocation.getArgument(1);
+                    for (Object[] row : batch) {
+                        written.merge((String) row[2], (Long) row[0], Long::sum);
+                    }
+                    return new int[batch.size()];
+                });
+        aggregator.record("abc", 3);
+
+        aggregator.flush();
+        assertThat(written).isEmpty();
+        assertThat(aggregator.getUnflushedClicks()).isEqualTo(3);
+
+        aggregator.record("abc");
+        aggregator.flush();
+        assertThat(written).containsExactlyEntriesOf(Map.of("abc", 4L));
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.url_shortner.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ClickJournalTests {
+
+    // The smallest segment the journal supports
+    private static final int SEGMENT_SIZE_MB = 1;
+    private static final int RECORDS_PER_SEGMENT = SEGMENT_SIZE_MB * 1024 * 1024 / ClickJournal.RECORD_SIZE;
+
+    @TempDir
+    Path dir;
+
+    private ClickCountAggregator clickCountAggregator;
+    private ClickStatsService clickStatsService;
+
+    @BeforeEach
+    void setUp() {
+        clickCountAggregator = mock(ClickCountAggregator.class);
+        clickStatsService = mock(ClickStatsService.class);
+    }
+
+    @Test
+    void appendedRecordIsCommittedWithItsFields() throws IOException {
+        ClickJournal journal = openJournal();
+
+        assertThat(journal.append("abc1234", "https://example.com", "Mozilla/5.0 (iPhone)")).isTrue();
+
+        ByteBuffer segment = map(journal.segmentPath(1));
+        assertThat(ClickJournal.isCommitted(segment, 0)).isTrue();
+        assertThat(ClickJournal.readCode(segment, 0)).isEqualTo("abc1234");
+        assertThat(ClickJournal.readTimestamp(segment, 0)).isCloseTo(System.currentTimeMillis(), within(60_000L));
+        assertThat(segment.get(ClickJournal.USER_AGENT_OFFSET)).isEqualTo((byte) ClickJournal.UserAgentClass.MOBILE.ordinal());
+        assertThat(ClickJournal.isCommitted(segment, ClickJournal.RECORD_SIZE)).isFalse();
+    }
+
+    @Test
+    void recordWithoutCommitMarkerIsNotVisible() throws IOException {
+        ClickJournal journal = openJournal();
+        journal.append("first", null, null);
+
+        // A writer that reserved the next slot and filled it, but has not published the marker yet
+        writeUncommittedRecord(map(journal.segmentPath(1)), reserveSlot(journal), "second");
+        journal.append("third", null, null);
+
+        ClickJournalReplayer replayer = openReplayer(journal);
+        replayer.replay();
+
+        // The live segment is read up to the unpublished slot and no further
+        verify(clickCountAggregator).writeIncrements(Map.of("first", 1L));
+        assertThat(Files.readString(dir.resolve("checkpoint"))).isEqualTo("1 " + ClickJournal.RECORD_SIZE);
+    }
+
+    @Test
+    void rejectsCodesItCannotStore() {
+        ClickJournal journal = openJournal();
+
+        assertThat(journal.append("x".repeat(ClickJournal.MAX_CODE_LENGTH + 1), null, null)).isFalse();
+        assertThat(journal.append("café", null, null)).isFalse();
+    }
+
+    @Test
+    void fullSegmentRotatesToTheNextOne() throws IOException {
+        ClickJournal journal = openJournal();
+
+        for (int i = 0; i < RECORDS_PER_SEGMENT; i++) {
+            assertThat(journal.append("code" + i % 10, null, null)).isTrue();
+        }
+        assertThat(journal.currentSequence()).isEqualTo(1);
+
+        assertThat(journal.append("overflow", null, null)).isTrue();
+
+        assertThat(journal.currentSequence()).isEqualTo(2);
+        assertThat(journal.listSegments()).containsExactly(1, 2);
+        ByteBuffer next = map(journal.segmentPath(2));
+        assertThat(ClickJournal.readCode(next, 0)).isEqualTo("overflow");
+        // A sealed segment is not settled until in-flight appends have had time to finish
+        assertThat(journal.isSettled(1, 60_000)).isFalse();
+        assertThat(journal.isSettled(1, -1)).isTrue();
+    }
+
+    @Test
+    void replayResumesFromTheCheckpointAfterACrash() throws IOException {
+        ClickJournal journal = openJournal();
+        journal.append("abc", null, null);
+        journal.append("abc", null, null);
+        journal.append("xyz", null, null);
+        ClickJournalReplayer replayer = openReplayer(journal);
+
+        replayer.replay();
+
+        verify(clickCountAggregator).writeIncrements(Map.of("abc", 2L, "xyz", 1L));
+        assertThat(Files.readString(dir.resolve("checkpoint"))).isEqualTo("1 " + 3 * ClickJournal.RECORD_SIZE);
+
+        // Clicks after the checkpoint, then a crash: no shutdown replay, and a slot left half written
+        journal.append("abc", null, null);
+        writeUncommittedRecord(map(journal.segmentPath(1)), reserveSlot(journal), "torn");
+        journal.append("xyz", null, null);
+
+        ClickJournal restarted = openJournal();
+        ClickJournalReplayer restartedReplayer = openReplayer(restarted);
+
+        // The previous run's segment is never appended to again
+        assertThat(restarted.currentSequence()).isEqualTo(2);
+
+        restartedReplayer.replay();
+
+        // Only the clicks after the checkpoint; the torn slot is skipped as a hole
+        verify(clickCountAggregator).writeIncrements(Map.of("abc", 1L, "xyz", 1L));
+        assertThat(Files.exists(restarted.segmentPath(1))).isFalse();
+        assertThat(Files.readString(dir.resolve("checkpoint"))).isEqualTo("2 0");
+
+        // Nothing new, nothing written
+        restartedReplayer.replay();
+        verify(clickCountAggregator, times(2)).writeIncrements(any());
+    }
+
+    private ClickJournal openJournal() {
+        ClickJournal journal = new ClickJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "dir", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentSizeMb", SEGMENT_SIZE_MB);
+        journal.init();
+        return journal;
+    }
+
+    private ClickJournalReplayer openReplayer(ClickJournal journal) {
+        ClickJournalReplayer replayer = new ClickJournalReplayer();
+        ReflectionTestUtils.setField(replayer, "clickJournal", journal);
+        ReflectionTestUtils.setField(replayer, "clickCountAggregator", clickCountAggregator);
+        ReflectionTestUtils.setField(replayer, "clickStatsService", clickStatsService);
+        ReflectionTestUtils.setField(replayer, "maxEventsPerReplay", 100_000);
+        ReflectionTestUtils.setField(replayer, "settleMillis", 1000L);
+        replayer.init();
+        return replayer;
+    }
+
+    // Takes the next slot the way append does, without writing it
+    private static int reserveSlot(ClickJournal journal) {
+        Object segment = ReflectionTestUtils.getField(journal, "current");
+        AtomicInteger position = (AtomicInteger) ReflectionTestUtils.getField(segment, "position");
+        return position.getAndAdd(ClickJournal.RECORD_SIZE);
+    }
+
+    private static MappedByteBuffer map(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+    }
+
+    // A record as a crashed or still-running writer leaves it: filled in, but with no commit marker
+    private static void writeUncommittedRecord(ByteBuffer segment, int offset, String code) {
+        byte[] bytes = code.getBytes(StandardCharsets.US_ASCII);
+        segment.put(offset + ClickJournal.CODE_LENGTH_OFFSET, (byte) bytes.length);
+        segment.put(offset + ClickJournal.CODE_OFFSET, bytes);
+        segment.putLong(offset + ClickJournal.TIMESTAMP_OFFSET, System.currentTimeMillis());
+    }
+}
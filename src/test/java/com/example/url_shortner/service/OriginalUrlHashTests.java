@@ -0,0 +1,59 @@
+package com.example.url_shortner.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OriginalUrlHashTests {
+
+    @Test
+    void schemeAndHostAreLowerCased() {
+        assertThat(OriginalUrlHash.normalize("HTTPS://Example.COM/Path")).isEqualTo("https://example.com/Path");
+        assertThat(OriginalUrlHash.normalize("http://EXAMPLE.com/a?Q=1#Frag")).isEqualTo("http://example.com/a?Q=1#Frag");
+    }
+
+    @Test
+    void pathQueryAndFragmentKeepTheirCase() {
+        assertThat(OriginalUrlHash.normalize("https://example.com/Page"))
+                .isNotEqualTo(OriginalUrlHash.normalize("https://example.com/page"));
+        assertThat(OriginalUrlHash.normalize("https://example.com/?q=A"))
+                .isNotEqualTo(OriginalUrlHash.normalize("https://example.com/?q=a"));
+    }
+
+    @Test
+    void defaultPortIsDropped() {
+        assertThat(OriginalUrlHash.normalize("https://example.com:443/a")).isEqualTo("https://example.com/a");
+        assertThat(OriginalUrlHash.normalize("http://example.com:80/a")).isEqualTo("http://example.com/a");
+        // Only the scheme's own default
+        assertThat(OriginalUrlHash.normalize("http://example.com:443/a")).isEqualTo("http://example.com:443/a");
+        assertThat(OriginalUrlHash.normalize("https://example.com:8443/a")).isEqualTo("https://example.com:8443/a");
+    }
+
+    @Test
+    void emptyPathBecomesSlash() {
+        assertThat(OriginalUrlHash.normalize("https://example.com")).isEqualTo("https://example.com/");
+        assertThat(OriginalUrlHash.normalize("https://example.com?q=1")).isEqualTo("https://example.com/?q=1");
+        assertThat(OriginalUrlHash.normalize("https://example.com/")).isEqualTo("https://example.com/");
+    }
+
+    @Test
+    void userInfoAndEncodingAreKept() {
+        assertThat(OriginalUrlHash.normalize("https://User:pw@Example.com/a%2Fb?x=%20"))
+                .isEqualTo("https://User:pw@example.com/a%2Fb?x=%20");
+    }
+
+    @Test
+    void unparseableUrlsAreOnlyTrimmed() {
+        assertThat(OriginalUrlHash.normalize("  not a url ")).isEqualTo("not a url");
+        assertThat(OriginalUrlHash.normalize("mailto:Someone@Example.com")).isEqualTo("mailto:Someone@Example.com");
+        assertThat(OriginalUrlHash.normalize(" https://Example.com ")).isEqualTo("https://example.com/");
+    }
+
+    @Test
+    void equivalentUrlsHashAlike() {
+        long hash = OriginalUrlHash.of(OriginalUrlHash.normalize("HTTPS://Example.com:443"));
+
+        assertThat(OriginalUrlHash.of(OriginalUrlHash.normalize("https://example.com/"))).isEqualTo(hash);
+        assertThat(OriginalUrlHash.of(OriginalUrlHash.normalize("https://example.com/other"))).isNotEqualTo(hash);
+    }
+}
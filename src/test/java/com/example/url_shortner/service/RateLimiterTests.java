@@ -0,0 +1,126 @@
+package com.example.url_shortner.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTests {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private SimpleMeterRegistry registry;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        // Far from zero, like System.nanoTime()
+        now = 123_456_789_000L;
+    }
+
+    @Test
+    void burstIsAllowedThenOneRequestPerInterval() {
+        RateLimiter limiter = limiter(2, 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isZero();
+        }
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isEqualTo(500 * MILLIS);
+
+        now += 499 * MILLIS;
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isEqualTo(MILLIS);
+        now += MILLIS;
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isEqualTo(500 * MILLIS);
+    }
+
+    @Test
+    void sustainedTrafficIsHeldToTheRate() {
+        RateLimiter limiter = limiter(10, 20);
+
+        int allowed = 0;
+        // 100 attempts a second for 10 seconds
+        for (int i = 0; i < 1000; i++) {
+            if (limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1") == 0) {
+                allowed++;
+            }
+            now += 10 * MILLIS;
+        }
+
+        assertThat(allowed).isBetween(20 + 10 * 10 - 1, 20 + 10 * 10 + 1);
+        assertThat(registry.get("ratelimit.rejected").tag("limit", "auth").counter().count()).isEqualTo(1000 - allowed);
+    }
+
+    @Test
+    void idleBucketRefillsOnlyUpToTheBurst() {
+        RateLimiter limiter = limiter(2, 5);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1");
+        }
+
+        now += 60 * SECOND;
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isZero();
+        }
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isPositive();
+    }
+
+    @Test
+    void clientsHaveSeparateBuckets() {
+        RateLimiter limiter = limiter(1, 1);
+
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isPositive();
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.2")).isZero();
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.SHORTEN, "10.0.0.1")).isZero();
+    }
+
+    @Test
+    void manyPermitsOverdrawTheBucket() {
+        RateLimiter limiter = limiter(2, 5);
+
+        // Allowed because a token is left, then paid off at the rate
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "user:alice", 20)).isZero();
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "user:alice")).isEqualTo(8 * SECOND);
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "user:alice", 3)).isEqualTo(8 * SECOND);
+
+        now += 8 * SECOND;
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "user:alice")).isZero();
+        assertThat(limiter.tryAcquire(RateLimiter.Limit.AUTH, "user:alice", 0)).isZero();
+    }
+
+    @Test
+    void disabledOrZeroRateLimitsNothing() {
+        RateLimiter disabled = new RateLimiter(registry);
+        disabled.init();
+        RateLimiter zeroRate = limiter(0, 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(disabled.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isZero();
+            assertThat(zeroRate.tryAcquire(RateLimiter.Limit.AUTH, "10.0.0.1")).isZero();
+        }
+    }
+
+    // The auth limit at the given rate and burst, the others at their defaults
+    private RateLimiter limiter(double authPerSecond, int authBurst) {
+        RateLimiter limiter = new RateLimiter(registry);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "stripes", 65536);
+        ReflectionTestUtils.setField(limiter, "redirectPerSecond", 100.0);
+        ReflectionTestUtils.setField(limiter, "redirectBurst", 500);
+        ReflectionTestUtils.setField(limiter, "shortenPerSecond", 5.0);
+        ReflectionTestUtils.setField(limiter, "shortenBurst", 30);
+        ReflectionTestUtils.setField(limiter, "authPerSecond", authPerSecond);
+        ReflectionTestUtils.setField(limiter, "authBurst", authBurst);
+        limiter.setNanoClock(() -> now);
+        limiter.init();
+        return limiter;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.url_shortner.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedirectSnapshotTests {
+
+    private static final LocalDateTime WATERMARK = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    // Small enough for a few MiB of records to cross many window boundaries
+    private static final long SMALL_WINDOW = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writtenEntriesCanBeLookedUp() throws IOException {
+        Path file = dir.resolve("snapshot");
+        LocalDateTime expiry = LocalDateTime.of(2030, 6, 1, 8, 30, 15);
+        try (RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(file, 3, WATERMARK)) {
+            assertThat(writer.add("abc1234", "https://example.com/a", expiry, RedirectPolicy.DEFAULT)).isTrue();
+            assertThat(writer.add("xyz", "https://example.com/ü?q=1", null, RedirectPolicy.of(true, 3600))).isTrue();
+            writer.finish();
+        }
+
+        RedirectSnapshot snapshot = RedirectSnapshot.open(file);
+
+        assertThat(snapshot.getEntryCount()).isEqualTo(2);
+        assertThat(snapshot.getWatermark()).isEqualTo(WATERMARK);
+        CachedUrl first = snapshot.lookup("abc1234");
+        assertThat(first.originalUrl()).isEqualTo("https://example.com/a");
+        assertThat(first.expiresAt()).isEqualTo(expiry);
+        assertThat(first.policy()).isEqualTo(RedirectPolicy.DEFAULT);
+        CachedUrl second = snapshot.lookup("xyz");
+        assertThat(second.originalUrl()).isEqualTo("https://example.com/ü?q=1");
+        assertThat(second.expiresAt()).isNull();
+        assertThat(second.policy()).isEqualTo(RedirectPolicy.of(true, 3600));
+        assertThat(snapshot.lookup("missing")).isNull();
+        assertThat(snapshot.lookup("abc123")).isNull();
+    }
+
+    @Test
+    void recordsStraddlingWindowBoundariesAreReadWhole() throws IOException {
+        Path file = dir.resolve("snapshot");
+        Map<String, String> urls = new HashMap<>();
+        try (RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(file, 2000, WATERMARK, SMALL_WINDOW)) {
+            for (int i = 0; i < 2000; i++) {
+                // Lengths that don't divide the window, so records keep landing across its edges
+                String url = "https://example.com/" + "p".repeat(37 + i * 13 % 3001) + "/" + i;
+                urls.put("code" + i, url);
+                assertThat(writer.add("code" + i, url, null, RedirectPolicy.DEFAULT)).isTrue();
+            }
+            writer.finish();
+        }
+        assertThat(Files.size(file)).isGreaterThan(20 * SMALL_WINDOW);
+
+        // The window is how the file is mapped, not part of its format
+        for (RedirectSnapshot snapshot : new RedirectSnapshot[]{
+                RedirectSnapshot.open(file, SMALL_WINDOW), RedirectSnapshot.open(file)}) {
+            urls.forEach((code, url) -> assertThat(snapshot.lookup(code).originalUrl()).isEqualTo(url));
+        }
+    }
+
+    @Test
+    void lookupsWorkAcrossTheOneGibibyteWindowBoundary() throws IOException {
+        Path file = dir.resolve("snapshot");
+        // A slot table of 2^27 slots is exactly one window, so every record starts beyond the first;
+        // the file is sparse, so only the slots that are written take space
+        long expectedEntries = 1L << 26;
+        try (RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(file, expectedEntries, WATERMARK)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.add("code" + i, "https://example.com/" + i, null, RedirectPolicy.DEFAULT);
+            }
+            writer.finish();
+        }
+        assertThat(Files.size(file)).isGreaterThan(RedirectSnapshot.WINDOW);
+
+        RedirectSnapshot snapshot = RedirectSnapshot.open(file);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(snapshot.lookup("code" + i).originalUrl()).isEqualTo("https://example.com/" + i);
+        }
+        assertThat(snapshot.lookup("code1000")).isNull();
+    }
+
+    @Test
+    void codesWithTheSameFingerprintAndSlotAreToldApart() throws IOException {
+        String[] pair = findCollidingCodes();
+        Path onlyFirst = dir.resolve("first");
+        try (RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(onlyFirst, 10, WATERMARK)) {
+            writer.add(pair[0], "https://example.com/first", null, RedirectPolicy.DEFAULT);
+            writer.finish();
+        }
+        Path both = dir.resolve("both");
+        try (RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(both, 10, WATERMARK)) {
+            writer.add(pair[0], "https://example.com/first", null, RedirectPolicy.DEFAULT);
+            writer.add(pair[1], "https://example.com/second", null, RedirectPolicy.DEFAULT);
+            writer.finish();
+        }
+
+        // The fingerprint matches, but the stored code does not
+        assertThat(RedirectSnapshot.open(onlyFirst).lookup(pair[1])).isNull();
+        RedirectSnapshot snapshot = RedirectSnapshot.open(both);
+        assertThat(snapshot.lookup(pair[0]).originalUrl()).isEqualTo("https://example.com/first");
+        assertThat(snapshot.lookup(pair[1]).originalUrl()).isEqualTo("https://example.com/second");
+    }
+
+    @Test
+    void entriesThatCannotBeStoredAreSkipped() throws IOException {
+        Path file = dir.resolve("snapshot");
+        try (RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(file, 3, WATERMARK)) {
+            assertThat(writer.add("big", "https://example.com/" + "x".repeat(RedirectSnapshot.MAX_RECORD_SIZE), null, RedirectPolicy.DEFAULT)).isFalse();
+            assertThat(writer.add("café", "https://example.com/", null, RedirectPolicy.DEFAULT)).isFalse();
+            assertThat(writer.add("fits", "https://example.com/fits", null, RedirectPolicy.DEFAULT)).isTrue();
+            assertThat(writer.getEntryCount()).isEqualTo(1);
+            writer.finish();
+        }
+
+        RedirectSnapshot snapshot = RedirectSnapshot.open(file);
+
+        assertThat(snapshot.getEntryCount()).isEqualTo(1);
+        assertThat(snapshot.lookup("big")).isNull();
+        assertThat(snapshot.lookup("fits").originalUrl()).isEqualTo("https://example.com/fits");
+    }
+
+    @Test
+    void fileWithoutAHeaderIsRejected() throws IOException {
+        Path file = dir.resolve("snapshot");
+        // A crash before finish(): the file and its slot table exist, but the header was never written
+        RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(file, 3, WATERMARK);
+        writer.add("abc", "https://example.com/", null, RedirectPolicy.DEFAULT);
+
+        assertThat(Files.exists(file)).isTrue();
+        assertThatThrownBy(() -> RedirectSnapshot.open(file)).isInstanceOf(IOException.class);
+        writer.close();
+
+        Path truncated = dir.resolve("truncated");
+        Files.write(truncated, new byte[10]);
+        assertThatThrownBy(() -> RedirectSnapshot.open(truncated)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void unfinishedWriterRemovesItsFile() throws IOException {
+        Path file = dir.resolve("snapshot");
+        try (RedirectSnapshot.Writer writer = new RedirectSnapshot.Writer(file, 3, WATERMARK)) {
+            writer.add("abc", "https://example.com/", null, RedirectPolicy.DEFAULT);
+        }
+
+        assertThat(Files.exists(file)).isFalse();
+    }
+
+    // Two codes whose hashes agree in the 24 fingerprint bits and in the slot of a 1024-slot table
+    private static String[] findCollidingCodes() {
+        Map<Long, String> seen = new HashMap<>();
+        for (int i = 0; ; i++) {
+            String code = "c" + i;
+            long hash = ReflectionTestUtils.invokeMethod(RedirectSnapshot.class, "hash", code);
+            String previous = seen.putIfAbsent((hash >>> 40) << 10 | (hash & 1023), code);
+            if (previous != null) {
+                return new String[]{previous, code};
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.url_shortner.service;
+
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisCircuitBreakerTests {
+
+    private RedisCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = new RedisCircuitBreaker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 2);
+        ReflectionTestUtils.setField(circuitBreaker, "slowCallMillis", 10_000L);
+        ReflectionTestUtils.setField(circuitBreaker, "openMillis", 60_000L);
+    }
+
+    @Test
+    void transportErrorsOpenTheCircuit() {
+        assertThat(circuitBreaker.call(() -> {
+            throw new RedisConnectionFailureException("refused");
+        }, () -> "fallback")).isEqualTo("fallback");
+        circuitBreaker.call(() -> {
+            throw new RedisCommandTimeoutException("timed out");
+        }, () -> "fallback");
+
+        assertThat(circuitBreaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.call(() -> "value", () -> "fallback")).isEqualTo("fallback");
+    }
+
+    @Test
+    void otherErrorsFallBackWithoutOpeningTheCircuit() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(circuitBreaker.call(() -> {
+                throw new NumberFormatException("bad value");
+            }, () -> "fallback")).isEqualTo("fallback");
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.call(() -> "value", () -> "fallback")).isEqualTo("value");
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.url_shortner.service;
+
+import com.example.url_shortner.config.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Runs the rebalancer against four embedded H2 databases behind the real routing datasource.
+ */
+class ShardRebalancerTests {
+
+    private static final int LINKS = 2000;
+
+    // The columns the rebalancer reads and writes; Hibernate creates the real tables
+    private static final String[] SCHEMA = {
+            "CREATE TABLE url_mappings (id BIGINT AUTO_INCREMENT PRIMARY KEY, original_url VARCHAR NOT NULL, "
+                    + "original_url_hash BIGINT, short_url VARCHAR(10) NOT NULL UNIQUE, created_at TIMESTAMP NOT NULL, "
+                    + "expires_at TIMESTAMP, updated_at TIMESTAMP, click_count BIGINT NOT NULL DEFAULT 0, "
+                    + "permanent_redirect BOOLEAN, cache_max_age_seconds INT, user_id BIGINT)",
+            "CREATE TABLE click_stats (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "url_mapping_id BIGINT NOT NULL REFERENCES url_mappings (id) ON DELETE CASCADE, "
+                    + "granularity SMALLINT NOT NULL, bucket INT NOT NULL, clicks BIGINT NOT NULL)"
+    };
+
+    private final List<HikariDataSource> shards = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ShardRouter shardRouter;
+    private ShardRebalancer rebalancer;
+
+    @BeforeEach
+    void setUp() {
+        String run = UUID.randomUUID().toString();
+        for (int i = 0; i < 4; i++) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setJdbcUrl("jdbc:h2:mem:" + run + "-shard" + i + ";DB_CLOSE_DELAY=-1");
+            shard.setMaximumPoolSize(2);
+            new JdbcTemplate(shard).batchUpdate(SCHEMA);
+            shards.add(shard);
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shards.get(0), shards.subList(1, shards.size()));
+        routing.afterPropertiesSet();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        shardRouter = new ShardRouter();
+        ReflectionTestUtils.setField(shardRouter, "enabled", true);
+        useShards(3);
+
+        rebalancer = new ShardRebalancer();
+        ReflectionTestUtils.setField(rebalancer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(rebalancer, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(rebalancer, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(rebalancer, "batchSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shards.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void addingAShardMovesItsShareOfLinksWithTheirStats() {
+        Timestamp created = Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 0, 0));
+        for (int i = 0; i < LINKS; i++) {
+            String code = "code" + i;
+            long clicks = i;
+            shardRouter.onShard(shardRouter.shardFor(code), () -> {
+                jdbcTemplate.update("INSERT INTO url_mappings (original_url, original_url_hash, short_url, created_at, click_count, "
+                        + "permanent_redirect, user_id) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        "https://example.com/" + code, (long) code.hashCode(), code, created, clicks, clicks % 2 == 0, clicks % 7);
+                Long id = jdbcTemplate.queryForObject("SELECT id FROM url_mappings WHERE short_url = ?", Long.class, code);
+                jdbcTemplate.update("INSERT INTO click_stats (url_mapping_id, granularity, bucket, clicks) VALUES (?, 0, 100, ?)", id, clicks);
+            });
+        }
+        assertThat(rowsOn(3)).isZero();
+
+        useShards(4);
+        long moved = rebalancer.rebalance();
+
+        // Only the codes that now score highest on the new shard move, and all of them go there
+        assertThat((double) moved).isCloseTo(LINKS / 4.0, within(LINKS * 0.05));
+        assertThat(rowsOn(3)).isEqualTo(moved);
+        assertThat(rowsOn(0) + rowsOn(1) + rowsOn(2) + rowsOn(3)).isEqualTo(LINKS);
+        for (int i = 0; i < LINKS; i++) {
+            String code = "code" + i;
+            Map<String, Object> row = shardRouter.onShardFor(code, () -> jdbcTemplate.queryForMap(
+                    "SELECT m.original_url, m.click_count, m.permanent_redirect, m.user_id, s.clicks "
+                            + "FROM url_mappings m JOIN click_stats s ON s.url_mapping_id = m.id WHERE m.short_url = ?", code));
+            assertThat(row.get("original_url")).isEqualTo("https://example.com/" + code);
+            assertThat(((Number) row.get("click_count")).longValue()).isEqualTo(i);
+            assertThat(row.get("permanent_redirect")).isEqualTo(i % 2 == 0);
+            assertThat(((Number) row.get("user_id")).longValue()).isEqualTo(i % 7);
+            assertThat(((Number) row.get("clicks")).longValue()).isEqualTo(i);
+        }
+        // Stats left the old shards with their rows
+        for (int shard = 0; shard < 4; shard++) {
+            assertThat(statsOn(shard)).isEqualTo(rowsOn(shard));
+        }
+
+        // Nothing is misplaced any more, so a second run is a no-op
+        assertThat(rebalancer.rebalance()).isZero();
+    }
+
+    @Test
+    void interruptedMoveCanBeRunAgain() {
+        useShards(4);
+        String code = movingCode();
+        Timestamp created = Timestamp.valueOf(LocalDateTime.now());
+        // A previous run copied the row to its new shard but died before deleting the original
+        for (int shard : new int[]{0, 3}) {
+            shardRouter.onShard(shard, () -> jdbcTemplate.update(
+                    "INSERT INTO url_mappings (original_url, short_url, created_at) VALUES (?, ?, ?)", "https://example.com/", code, created));
+        }
+
+        assertThat(rebalancer.rebalance()).isEqualTo(1);
+
+        assertThat(rowsOn(0)).isZero();
+        assertThat(rowsOn(3)).isEqualTo(1);
+    }
+
+    private void useShards(int count) {
+        List<String> urls = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            urls.add("shard" + i);
+        }
+        ReflectionTestUtils.setField(shardRouter, "shardUrls", urls);
+    }
+
+    // A code that lives on shard 0 with three shards and on shard 3 with four
+    private static String movingCode() {
+        for (int i = 0; ; i++) {
+            String code = "move" + i;
+            if (ShardRouter.shardFor(code, 3) == 0 && ShardRouter.shardFor(code, 4) == 3) {
+                return code;
+            }
+        }
+    }
+
+    private long rowsOn(int shard) {
+        return shardRouter.onShard(shard, () -> jdbcTemplate.queryForObject("SELECT count(*) FROM url_mappings", Long.class));
+    }
+
+    private long statsOn(int shard) {
+        return shardRouter.onShard(shard, () -> jdbcTemplate.queryForObject("SELECT count(*) FROM click_stats", Long.class));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.url_shortner.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ShardRouterTests {
+
+    private static final int CODES = 100_000;
+
+    @Test
+    void placementIsStable() {
+        for (int i = 0; i < 1000; i++) {
+            String code = "code" + i;
+            int shard = ShardRouter.shardFor(code, 4);
+            assertThat(shard).isBetween(0, 3);
+            assertThat(ShardRouter.shardFor(code, 4)).isEqualTo(shard);
+            assertThat(ShardRouter.shardFor(code, 1)).isZero();
+        }
+        // Pinned: a change to the hash would silently strand every existing row on the wrong shard
+        assertThat(ShardRouter.shardFor("abc1234", 4)).isEqualTo(1);
+        assertThat(ShardRouter.shardFor("abc1234", 8)).isEqualTo(4);
+        assertThat(ShardRouter.shardFor("0000001", 4)).isEqualTo(2);
+        assertThat(ShardRouter.shardFor("0000001", 8)).isEqualTo(7);
+    }
+
+    @Test
+    void codesAreSpreadEvenly() {
+        for (int shards = 2; shards <= 8; shards++) {
+            int[] counts = new int[shards];
+            for (int i = 0; i < CODES; i++) {
+                counts[ShardRouter.shardFor(code(i), shards)]++;
+            }
+            for (int count : counts) {
+                assertThat((double) count).isCloseTo((double) CODES / shards, within(CODES * 0.02));
+            }
+        }
+    }
+
+    @Test
+    void addingAShardMovesOnlyItsShareAndOnlyToIt() {
+        for (int shards = 1; shards <= 7; shards++) {
+            int moved = 0;
+            for (int i = 0; i < CODES; i++) {
+                int before = ShardRouter.shardFor(code(i), shards);
+                int after = ShardRouter.shardFor(code(i), shards + 1);
+                if (before != after) {
+                    assertThat(after).isEqualTo(shards);
+                    moved++;
+                }
+            }
+            assertThat((double) moved / CODES).isCloseTo(1.0 / (shards + 1), within(0.01));
+        }
+    }
+
+    // Shaped like generated codes: seven base62 characters
+    private static String code(int i) {
+        String alphabet = ShortCodeGenerator.ALPHABET;
+        char[] code = new char[7];
+        long value = (i + 1L) * 0x9E3779B97F4A7C15L >>> 1;
+        for (int position = 0; position < code.length; position++) {
+            code[position] = alphabet.charAt((int) (value % 62));
+            value /= 62;
+        }
+        return new String(code);
+    }
+}
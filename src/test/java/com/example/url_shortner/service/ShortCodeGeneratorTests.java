@@ -0,0 +1,144 @@
+package com.example.url_shortner.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShortCodeGeneratorTests {
+
+    private static final long CODE_SPACE = 3_521_614_606_208L;
+    private static final int BLOCK_SIZE = 1000;
+
+    private JdbcTemplate jdbcTemplate;
+    private ShortCodeGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        generator = new ShortCodeGenerator();
+        ReflectionTestUtils.setField(generator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(generator, "idSource", "sequence");
+        ReflectionTestUtils.setField(generator, "blockSize", BLOCK_SIZE);
+        ReflectionTestUtils.setField(generator, "permute", true);
+        ReflectionTestUtils.setField(generator, "permutationKey", 6364136223846793005L);
+    }
+
+    @Test
+    void unpermuteInvertsPermute() {
+        for (long id = 0; id < 100_000; id++) {
+            assertThat(generator.unpermute(generator.permute(id))).isEqualTo(id);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long id = Math.floorMod(random.nextLong(), CODE_SPACE);
+            assertThat(generator.unpermute(generator.permute(id))).isEqualTo(id);
+        }
+        assertThat(generator.unpermute(generator.permute(CODE_SPACE - 1))).isEqualTo(CODE_SPACE - 1);
+    }
+
+    @Test
+    void permutedIdsStayInsideTheCodeSpace() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long id = Math.floorMod(random.nextLong(), CODE_SPACE);
+            assertThat(generator.permute(id)).isBetween(0L, CODE_SPACE - 1);
+        }
+        for (long id = CODE_SPACE - 1000; id < CODE_SPACE; id++) {
+            assertThat(generator.permute(id)).isBetween(0L, CODE_SPACE - 1);
+        }
+    }
+
+    @Test
+    void codesAreSevenBase62Characters() {
+        assertThat(generator.encode(0)).hasSize(7);
+        assertThat(generator.encode(CODE_SPACE - 1)).hasSize(7).matches("[0-9A-Za-z]{7}");
+        ReflectionTestUtils.setField(generator, "permute", false);
+        assertThat(generator.encode(0)).isEqualTo("0000000");
+        assertThat(generator.encode(61)).isEqualTo("000000z");
+        assertThat(generator.encode(CODE_SPACE - 1)).isEqualTo("zzzzzzz");
+    }
+
+    @Test
+    void decodeInvertsEncode() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            long id = Math.floorMod(random.nextLong(), CODE_SPACE);
+            assertThat(generator.decode(generator.encode(id))).isEqualTo(id);
+        }
+        assertThat(generator.decode(generator.encode(CODE_SPACE + 5))).isEqualTo(CODE_SPACE + 5);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void missingRedisCounterIsSeededBeforeLeasing() {
+        RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.hasKey(ShortCodeGenerator.REDIS_COUNTER_KEY)).thenReturn(false, true);
+        when(valueOperations.setIfAbsent(ShortCodeGenerator.REDIS_COUNTER_KEY, "41999")).thenReturn(true);
+        when(valueOperations.increment(ShortCodeGenerator.REDIS_COUNTER_KEY, BLOCK_SIZE))
+                .thenReturn(41_999L + BLOCK_SIZE, 41_999L + 2 * BLOCK_SIZE);
+        ReflectionTestUtils.setField(generator, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(generator, "idSource", "redis");
+        ShortCodeGenerator seeded = spy(generator);
+        doReturn(41_999L).when(seeded).highestIssuedId();
+
+        assertThat(seeded.nextId()).isEqualTo(42_000L);
+        var order = inOrder(valueOperations);
+        order.verify(valueOperations).setIfAbsent(ShortCodeGenerator.REDIS_COUNTER_KEY, "41999");
+        order.verify(valueOperations).increment(ShortCodeGenerator.REDIS_COUNTER_KEY, BLOCK_SIZE);
+
+        // Once the counter exists, leasing doesn't look at the table again
+        for (int i = 1; i < BLOCK_SIZE; i++) {
+            seeded.nextId();
+        }
+        assertThat(seeded.nextId()).isEqualTo(42_000L + BLOCK_SIZE);
+        verify(seeded, times(1)).highestIssuedId();
+    }
+
+    @Test
+    void onlyGeneratedShapedCodesCountAsGenerated() {
+        assertThat(ShortCodeGenerator.hasGeneratedForm(generator.encode(12345))).isTrue();
+        assertThat(ShortCodeGenerator.hasGeneratedForm(generator.encode(Long.MAX_VALUE))).isTrue();
+        assertThat(ShortCodeGenerator.hasGeneratedForm("abc123")).isFalse();
+        assertThat(ShortCodeGenerator.hasGeneratedForm("my-alias")).isFalse();
+        assertThat(ShortCodeGenerator.hasGeneratedForm("wp-login.php")).isFalse();
+    }
+
+    @Test
+    void codesOfALeasedBlockAreUnique() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L, 1L + BLOCK_SIZE);
+
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            String code = generator.nextCode();
+            assertThat(code).matches("[0-9A-Za-z]{7}");
+            codes.add(code);
+        }
+
+        assertThat(codes).hasSize(BLOCK_SIZE);
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Long.class));
+
+        // The next code comes from a fresh block
+        assertThat(codes).doesNotContain(generator.nextCode());
+        verify(jdbcTemplate, times(2)).queryForObject(anyString(), eq(Long.class));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.url_shortner.service;
+
+import com.example.url_shortner.dto.ShortenRequest;
+import com.example.url_shortner.dto.UrlSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Which existing link a repeated shorten may reuse when urls.dedup.enabled is on.
+ */
+class UrlServiceTests {
+
+    private static final String URL = "https://example.com/page";
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    private UrlService urlService;
+
+    @BeforeEach
+    void setUp() {
+        urlService = new UrlService();
+        ReflectionTestUtils.setField(urlService, "dedupMinRemainingMinutes", 60L);
+    }
+
+    @Test
+    void defaultExpiryRepeatReusesALinkCreatedEarlier() {
+        // Shortened two days ago with the default expiry, which ends before the new request's would
+        UrlSummary earlier = link(1, URL, NOW.minusDays(2).plusDays(30), RedirectPolicy.DEFAULT);
+        ShortenRequest request = request(URL);
+
+        UrlSummary reused = UrlService.findReusable(List.of(earlier), normalized(URL), RedirectPolicy.DEFAULT,
+                minimumFor(request));
+
+        assertThat(reused).isSameAs(earlier);
+    }
+
+    @Test
+    void relativeExpiryRepeatReusesALinkCreatedEarlier() {
+        UrlSummary earlier = link(1, URL, NOW.plusDays(6), RedirectPolicy.DEFAULT);
+        ShortenRequest request = request(URL);
+        request.setExpiresInDays(7);
+
+        assertThat(UrlService.findReusable(List.of(earlier), normalized(URL), RedirectPolicy.DEFAULT, minimumFor(request)))
+                .isSameAs(earlier);
+    }
+
+    @Test
+    void linkAboutToExpireIsNotReused() {
+        UrlSummary expiring = link(1, URL, NOW.plusMinutes(59), RedirectPolicy.DEFAULT);
+
+        assertThat(UrlService.findReusable(List.of(expiring), normalized(URL), RedirectPolicy.DEFAULT, minimumFor(request(URL))))
+                .isNull();
+    }
+
+    @Test
+    void explicitExpirationDateIsNotCutShort() {
+        ShortenRequest request = request(URL);
+        request.setExpirationDate("2025-01-01T00:00:00");
+        UrlSummary sooner = link(1, URL, LocalDateTime.of(2024, 12, 31, 23, 59), RedirectPolicy.DEFAULT);
+        UrlSummary later = link(2, URL, LocalDateTime.of(2025, 1, 1, 0, 0), RedirectPolicy.DEFAULT);
+
+        assertThat(UrlService.findReusable(List.of(sooner), normalized(URL), RedirectPolicy.DEFAULT, minimumFor(request))).isNull();
+        assertThat(UrlService.findReusable(List.of(sooner, later), normalized(URL), RedirectPolicy.DEFAULT, minimumFor(request)))
+                .isSameAs(later);
+    }
+
+    @Test
+    void shortRelativeExpiryOnlyAsksForItsOwnLifetime() {
+        ShortenRequest request = request(URL);
+        request.setExpiresInDays(1);
+        LocalDateTime expiresAt = urlService.resolveExpiresAt(request, NOW);
+
+        // A floor longer than the requested lifetime would be capped by it
+        ReflectionTestUtils.setField(urlService, "dedupMinRemainingMinutes", 48 * 60L);
+
+        assertThat(urlService.minimumReuseExpiry(request, expiresAt, NOW)).isEqualTo(expiresAt);
+    }
+
+    @Test
+    void differentPolicyOrUrlIsNotReused() {
+        LocalDateTime expiresAt = NOW.plusDays(10);
+        UrlSummary permanent = link(1, URL, expiresAt, RedirectPolicy.of(true, 0));
+        UrlSummary cacheable = link(2, URL, expiresAt, RedirectPolicy.of(false, 3600));
+        UrlSummary otherPath = link(3, "https://example.com/Page", expiresAt, RedirectPolicy.DEFAULT);
+
+        assertThat(UrlService.findReusable(List.of(permanent, cacheable, otherPath), normalized(URL), RedirectPolicy.DEFAULT,
+                minimumFor(request(URL)))).isNull();
+        assertThat(UrlService.findReusable(List.of(permanent, cacheable), normalized(URL), RedirectPolicy.of(false, 3600),
+                minimumFor(request(URL)))).isSameAs(cacheable);
+    }
+
+    @Test
+    void candidateMatchingAfterNormalizingIsReused() {
+        UrlSummary earlier = link(1, "HTTPS://Example.COM:443/page", NOW.plusDays(10), RedirectPolicy.DEFAULT);
+
+        assertThat(UrlService.findReusable(List.of(earlier), normalized(URL), RedirectPolicy.DEFAULT, minimumFor(request(URL))))
+                .isSameAs(earlier);
+    }
+
+    @Test
+    void longestLivedMatchWinsAndNoExpiryBeatsAll() {
+        UrlSummary shorter = link(1, URL, NOW.plusDays(5), RedirectPolicy.DEFAULT);
+        UrlSummary longer = link(2, URL, NOW.plusDays(20), RedirectPolicy.DEFAULT);
+        UrlSummary forever = link(3, URL, null, RedirectPolicy.DEFAULT);
+        LocalDateTime minimum = minimumFor(request(URL));
+
+        assertThat(UrlService.findReusable(List.of(shorter, longer), normalized(URL), RedirectPolicy.DEFAULT, minimum)).isSameAs(longer);
+        assertThat(UrlService.findReusable(List.of(longer, shorter), normalized(URL), RedirectPolicy.DEFAULT, minimum)).isSameAs(longer);
+        assertThat(UrlService.findReusable(List.of(shorter, forever, longer), normalized(URL), RedirectPolicy.DEFAULT, minimum))
+                .isSameAs(forever);
+    }
+
+    private LocalDateTime minimumFor(ShortenRequest request) {
+        return urlService.minimumReuseExpiry(request, urlService.resolveExpiresAt(request, NOW), NOW);
+    }
+
+    private static ShortenRequest request(String originalUrl) {
+        ShortenRequest request = new ShortenRequest();
+        request.setOriginalUrl(originalUrl);
+        return request;
+    }
+
+    private static UrlSummary link(long id, String originalUrl, LocalDateTime expiresAt, RedirectPolicy policy) {
+        return new UrlSummary(id, originalUrl, "code" + id, NOW.minusDays(2), expiresAt, 0,
+                policy.isPermanent(), policy.getMaxAgeSeconds());
+    }
+
+    private static String normalized(String originalUrl) {
+        return OriginalUrlHash.normalize(originalUrl);
+    }
+}